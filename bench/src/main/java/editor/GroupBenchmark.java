@@ -0,0 +1,69 @@
+package editor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Drawing and moving a group of many shapes against the same shapes on their own: a group that
+// did not change is drawn from its sprite, and a move only changes its offset
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class GroupBenchmark {
+    private static final int SIZE = 1000;
+
+    @Param({"1000", "100000"})
+    public int shapeCount;
+
+    private List<Shape> shapes;
+    private Group group;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        shapes = SyntheticCanvas.randomShapes(1, shapeCount, 2 * SIZE, 2 * SIZE);
+        group = new Group(shapes.toArray(new Shape[0]), 0, 0);
+        image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        graphics.scale(0.5, 0.5);
+        CanvasRenderer.beginPass(graphics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage drawShapes() {
+        for (Shape shape : shapes) {
+            shape.draw(graphics);
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage drawGroup() {
+        group.draw(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public void moveShapes() {
+        for (Shape shape : shapes) {
+            shape.move(1, 1);
+        }
+    }
+
+    @Benchmark
+    public void moveGroup() {
+        group.move(1, 1);
+    }
+}
@@ -0,0 +1,63 @@
+package editor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// DrawPanel.paintComponent into an offscreen image, with the whole cache redrawn (load, resize, zoom)
+// or only blitted (repaint with nothing changed). The canvas is sized to fill the view at each zoom,
+// so zoomed-out runs show the level-of-detail rendering.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+    private static final int WIDTH = 1920, HEIGHT = 1080;
+
+    @Param({"MIXED", "LINE", "RECTANGLE", "CIRCLE"})
+    public SyntheticCanvas.Mix mix;
+
+    @Param({"1000", "10000", "1000000"})
+    public int shapeCount;
+
+    @Param({"1", "0.1", "0.01"})
+    public double zoom;
+
+    private VectorGraphicsEditor.DrawPanel drawPanel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        drawPanel = new VectorGraphicsEditor().drawPanel;
+        drawPanel.setSize(WIDTH, HEIGHT);
+        for (Shape shape : SyntheticCanvas.randomShapes(1, mix, shapeCount, (int) (WIDTH / zoom), (int) (HEIGHT / zoom))) {
+            drawPanel.addShape(shape);
+        }
+        drawPanel.zoomAt(new Point(0, 0), zoom);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage fullRepaint() {
+        drawPanel.invalidateCache(new Rectangle((int) (WIDTH / zoom), (int) (HEIGHT / zoom)));
+        drawPanel.paintComponent(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage cachedRepaint() {
+        drawPanel.paintComponent(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,47 @@
+package editor;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Time to read a whole file with ParallelTextCanvasReader by number of threads, over files of a
+// dozen chunks and more. Compare with TextCanvasBenchmark.textCanvasReader at the same number of
+// lines; scaling stops at the number of cores.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 4)
+@Measurement(iterations = 5, time = 4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelTextCanvasBenchmark {
+    @Param({"4000000", "10000000"})
+    public int lines;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("canvas", ".txt");
+        SyntheticCanvas.writeText(file, 1, lines, 4000, 4000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long parallelTextCanvasReader() throws IOException {
+        long shapes = 0;
+        try (CanvasReader reader = new ParallelTextCanvasReader(file, threads)) {
+            while (reader.next() != null) {
+                shapes++;
+            }
+        }
+        return shapes;
+    }
+}
@@ -0,0 +1,60 @@
+package editor;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// DrawPanel.selectShape at different canvas sizes, against a linear scan with the same exact test
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class SelectShapeBenchmark {
+    private static final int TOLERANCE = 4;
+    private static final int QUERIES = 1024; // power of two
+
+    @Param({"1000", "10000", "100000"})
+    public int shapeCount;
+
+    private VectorGraphicsEditor.DrawPanel drawPanel;
+    private ArrayList<Shape> shapes;
+    private Point[] queries;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        int size = (int) Math.sqrt(shapeCount) * 20; // keep the density of a busy 800x600 canvas
+        drawPanel = new VectorGraphicsEditor().drawPanel;
+        shapes = SyntheticCanvas.randomShapes(1, shapeCount, size, size);
+        for (Shape shape : shapes) {
+            drawPanel.addShape(shape);
+        }
+
+        Random random = new Random(2);
+        queries = new Point[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = new Point(random.nextInt(size), random.nextInt(size));
+        }
+    }
+
+    @Benchmark
+    public Shape selectShape() {
+        return drawPanel.selectShape(queries[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public Shape linearScan() {
+        Point p = queries[next++ & (QUERIES - 1)];
+        for (int i = shapes.size() - 1; i >= 0; i--) { // Topmost first
+            if (shapes.get(i).hit(p.x, p.y, TOLERANCE)) {
+                return shapes.get(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package editor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import javax.management.ObjectName;
+
+
+// Heap used per shape, from a class histogram of the live heap (same data as jmap -histo:live).
+// Not a JMH benchmark, JMH has no mode for footprint. Usage: java editor.ShapeHeapBenchmark [shapeCount]
+public class ShapeHeapBenchmark {
+    // Classes that make up the shapes themselves (the list and the index are reported separately)
+    private static final String[] SHAPE_CLASSES = {
+        "editor.Line", "editor.Rect", "editor.Circle", "java.awt.Point", "java.awt.Rectangle", "java.awt.Color"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int shapeCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ArrayList<Shape> shapes = new ArrayList<>(shapeCount);
+        for (Shape shape : SyntheticCanvas.randomShapes(1, shapeCount, 4000, 4000)) {
+            shapes.add(Shape.fromString(shape.toString())); // same objects a load creates
+        }
+        ShapeIndex index = new ShapeIndex();
+        for (Shape shape : shapes) {
+            index.add(shape);
+        }
+
+        String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[] { null }, new String[] { String[].class.getName() });
+        long shapeBytes = 0;
+        for (String row : histogram.split("\n")) {
+            String[] columns = row.trim().split("\\s+"); // num: #instances #bytes class name
+            if (columns.length >= 4 && columns[0].endsWith(":")) {
+                for (String name : SHAPE_CLASSES) {
+                    if (columns[3].equals(name)) {
+                        System.out.printf("%-20s %,12d instances %,14d bytes%n", name, Long.parseLong(columns[1]), Long.parseLong(columns[2]));
+                        shapeBytes += Long.parseLong(columns[2]);
+                    }
+                }
+            }
+        }
+        // Reading the list and the index after the histogram keeps them reachable while it is taken
+        System.out.printf("%,d shapes in the list, %,d in the index: %.1f bytes per shape (excluding list and index)%n",
+                shapes.size(), index.size(), (double) shapeBytes / shapes.size());
+    }
+}
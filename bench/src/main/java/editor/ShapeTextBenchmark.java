@@ -0,0 +1,44 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Shape.fromString and the toString() serializers, one shape type at a time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapeTextBenchmark {
+    private static final int SAMPLES = 1024; // power of two, cycled through so no single shape gets special-cased
+
+    @Param({"LINE", "RECTANGLE", "CIRCLE"})
+    public SyntheticCanvas.Mix mix;
+
+    private Shape[] shapes;
+    private String[] lines;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        ArrayList<Shape> list = SyntheticCanvas.randomShapes(1, mix, SAMPLES, 4000, 4000);
+        shapes = list.toArray(new Shape[0]);
+        lines = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            lines[i] = shapes[i].toString();
+        }
+    }
+
+    @Benchmark
+    public Shape fromString() {
+        return Shape.fromString(lines[next++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return shapes[next++ & (SAMPLES - 1)].toString();
+    }
+}
@@ -0,0 +1,46 @@
+package editor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Handing the canvas to background work (save, export, autosave): a ShapeList snapshot followed
+// by one edit, which pays for the copy-on-write, against the deep copy it replaced
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int shapeCount;
+
+    private ShapeList shapes;
+    private final Random random = new Random(2);
+
+    @Setup
+    public void setup() {
+        shapes = new ShapeList((shape, copy) -> { });
+        shapes.addAll(SyntheticCanvas.randomShapes(1, shapeCount, 4000, 4000));
+    }
+
+    @Benchmark
+    public List<Shape> snapshotAndEdit() {
+        List<Shape> snapshot = shapes.snapshot();
+        shapes.edit(random.nextInt(shapeCount)).move(1, 1);
+        return snapshot;
+    }
+
+    @Benchmark
+    public List<Shape> deepCopy() {
+        ArrayList<Shape> copy = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            copy.add(shape.copy());
+        }
+        return copy;
+    }
+}
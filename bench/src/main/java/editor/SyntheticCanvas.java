@@ -0,0 +1,118 @@
+package editor;
+
+import java.awt.*;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+
+// Random LINE/RECTANGLE/CIRCLE mixes for the benchmarks.
+// Usage: java editor.SyntheticCanvas <out.txt> [count] [--mix MIXED|LINE|RECTANGLE|CIRCLE] [--size WxH] [--seed N]
+public class SyntheticCanvas {
+    private static final Color[] PALETTE = {
+        new Color(0, 0, 0), new Color(0, 0, 220), new Color(0, 220, 220), new Color(220, 0, 0)
+    };
+
+    // Which shape types a canvas is made of
+    public enum Mix {
+        MIXED, LINE, RECTANGLE, CIRCLE
+    }
+
+    static Shape randomShape(Random random, Mix mix, int width, int height) {
+        Point start = new Point(random.nextInt(width), random.nextInt(height));
+        Point end = new Point(start.x + random.nextInt(201) - 100, start.y + random.nextInt(201) - 100);
+        Color color = PALETTE[random.nextInt(PALETTE.length)];
+        ShapeType type = mix == Mix.MIXED ? ShapeType.values()[random.nextInt(3)] : ShapeType.valueOf(mix.name());
+        switch (type) {
+            case LINE:
+                return new Line(start, end, color);
+            case RECTANGLE:
+                return new Rect(start, end, color);
+            default:
+                return new Circle(start, end, color);
+        }
+    }
+
+    static ArrayList<Shape> randomShapes(long seed, Mix mix, int count, int width, int height) {
+        Random random = new Random(seed);
+        ArrayList<Shape> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shapes.add(randomShape(random, mix, width, height));
+        }
+        return shapes;
+    }
+
+    static ArrayList<Shape> randomShapes(long seed, int count, int width, int height) {
+        return randomShapes(seed, Mix.MIXED, count, width, height);
+    }
+
+    // Canvas file in the text format with one shape per line
+    static void writeText(File file, long seed, Mix mix, int count, int width, int height) throws IOException {
+        Random random = new Random(seed);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file), 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                writer.println(randomShape(random, mix, width, height).toString());
+            }
+        }
+    }
+
+    static void writeText(File file, long seed, int count, int width, int height) throws IOException {
+        writeText(file, seed, Mix.MIXED, count, width, height);
+    }
+
+    // The same shapes as writeText, saved with a palette ("@index" instead of RGB). The shapes are
+    // made twice, once for the palette and once to write them, so none are kept.
+    static void writePaletteText(File file, long seed, int count, int width, int height) throws IOException {
+        Palette palette = new Palette();
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            palette.add(randomShape(random, Mix.MIXED, width, height).getRGB());
+        }
+        random = new Random(seed);
+        try (CanvasWriter writer = CanvasWriter.open(file, true, palette)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(randomShape(random, Mix.MIXED, width, height));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File out = null;
+        int count = 100_000;
+        Mix mix = Mix.MIXED;
+        int width = 4000, height = 4000;
+        long seed = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--mix":
+                        mix = Mix.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--size":
+                        String[] size = args[++i].split("x");
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        if (out == null) {
+                            out = new File(args[i]);
+                        } else {
+                            count = Integer.parseInt(args[i]);
+                        }
+                }
+            }
+        } catch (RuntimeException e) {
+            out = null;
+        }
+        if (out == null) {
+            System.err.println("Usage: java editor.SyntheticCanvas <out.txt> [count] [--mix MIXED|LINE|RECTANGLE|CIRCLE] [--size WxH] [--seed N]");
+            System.exit(2);
+        }
+
+        writeText(out, seed, mix, count, width, height);
+        System.out.printf("%,d %s shapes written to %s (%,d bytes)%n", count, mix, out, out.length());
+    }
+}
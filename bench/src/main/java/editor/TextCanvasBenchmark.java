@@ -0,0 +1,73 @@
+package editor;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Time to read a whole file with TextCanvasReader against BufferedReader + Shape.fromString, and
+// with TextCanvasReader over the same shapes saved with a palette ("@index" instead of RGB).
+// Lines per second are lines / time.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextCanvasBenchmark {
+    @Param({"1000000", "10000000"})
+    public int lines;
+
+    private File file;
+    private File paletteFile;
+
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("canvas", ".txt");
+        SyntheticCanvas.writeText(file, 1, lines, 4000, 4000);
+        paletteFile = File.createTempFile("canvas", ".txt");
+        SyntheticCanvas.writePaletteText(paletteFile, 1, lines, 4000, 4000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        paletteFile.delete();
+    }
+
+    @Benchmark
+    public long fromString() throws IOException {
+        long shapes = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (Shape.fromString(line) != null) {
+                    shapes++;
+                }
+            }
+        }
+        return shapes;
+    }
+
+    @Benchmark
+    public long textCanvasReader() throws IOException {
+        long shapes = 0;
+        try (TextCanvasReader reader = new TextCanvasReader(file)) {
+            while (reader.next() != null) {
+                shapes++;
+            }
+        }
+        return shapes;
+    }
+
+    @Benchmark
+    public long paletteTextCanvasReader() throws IOException {
+        long shapes = 0;
+        try (TextCanvasReader reader = new TextCanvasReader(paletteFile)) {
+            while (reader.next() != null) {
+                shapes++;
+            }
+        }
+        return shapes;
+    }
+}
@@ -0,0 +1,69 @@
+package editor;
+
+import java.awt.*;
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+
+// Time until the shapes in view of a large canvas are read: the tiles that intersect the view
+// of a tiled file, against the whole binary file that a load has to read before it is complete
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TiledCanvasBenchmark {
+    private static final int SHAPES = 1_000_000;
+    private static final int SIZE = 40_000;
+    private static final Rectangle VIEW = new Rectangle(SIZE / 2, SIZE / 2, 1600, 1000);
+
+    private File binaryFile;
+    private File tiledFile;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Shape> shapes = SyntheticCanvas.randomShapes(1, SHAPES, SIZE, SIZE);
+        binaryFile = File.createTempFile("canvas", ".vgc");
+        tiledFile = File.createTempFile("canvas", ".vgt");
+        try (CanvasWriter binary = new BinaryCanvasWriter(binaryFile);
+             CanvasWriter tiled = new TiledCanvasWriter(tiledFile)) {
+            for (Shape shape : shapes) {
+                binary.write(shape);
+                tiled.write(shape);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        binaryFile.delete();
+        tiledFile.delete();
+    }
+
+    @Benchmark
+    public int binaryWhole() throws IOException {
+        int count = 0;
+        try (CanvasReader reader = CanvasReader.open(binaryFile)) {
+            while (reader.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int tiledView() throws IOException {
+        int count = 0;
+        try (TiledCanvasReader reader = new TiledCanvasReader(tiledFile)) {
+            for (TiledCanvas.Tile tile : reader.getTiles()) {
+                if (tile.bounds.intersects(VIEW)) {
+                    count += reader.read(tile).shapes.length;
+                }
+            }
+        }
+        return count;
+    }
+}
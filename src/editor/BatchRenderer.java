@@ -0,0 +1,208 @@
+package editor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+
+// Headless entry point that renders every canvas file of a directory to an image.
+// Usage: java editor.BatchRenderer <input dir> [output dir] [--size WxH] [--format png|jpg|svg] [--tile N] [--threads N]
+public class BatchRenderer {
+    private File inputDir;
+    private File outputDir;
+    private int width = 0, height = 0; // 0: size of the canvas
+    private String format = "png";
+    private int tileSize = 0; // 0: no tiling
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int tileWorkers = 1; // threads left to each file for parsing and tiled rendering
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        BatchRenderer renderer = new BatchRenderer();
+        try {
+            renderer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: java editor.BatchRenderer <input dir> [output dir] [--size WxH] [--format png|jpg|svg] [--tile N] [--threads N]");
+            System.exit(2);
+        }
+        System.exit(renderer.run() ? 0 : 1);
+    }
+
+    private void parseArguments(String[] args) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                paths.add(arg);
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "--size":
+                        String[] size = value.toLowerCase().split("x");
+                        width = Integer.parseInt(size[0]);
+                        height = Integer.parseInt(size[1]);
+                        break;
+                    case "--format":
+                        format = value.toLowerCase();
+                        break;
+                    case "--tile":
+                        tileSize = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid value for " + arg + ": " + value);
+            }
+        }
+        if (paths.isEmpty() || paths.size() > 2) {
+            throw new IllegalArgumentException("Expected an input directory and an optional output directory");
+        }
+        if (!format.equals("png") && !format.equals("jpg") && !format.equals("svg")) {
+            throw new IllegalArgumentException("Format must be png, jpg or svg");
+        }
+        if (width < 0 || height < 0 || (width == 0) != (height == 0) || tileSize < 0 || threads < 1) {
+            throw new IllegalArgumentException("Sizes and thread count must be positive");
+        }
+        inputDir = new File(paths.get(0));
+        outputDir = new File(paths.get(paths.size() - 1));
+    }
+
+    // Render all files in parallel, returns false if any of them failed
+    private boolean run() throws InterruptedException {
+        File[] files = inputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt") || name.toLowerCase().endsWith(".vgc")
+                || name.toLowerCase().endsWith(".vgt"));
+        if (files == null) {
+            System.err.println("Cannot read directory " + inputDir);
+            return false;
+        }
+        outputDir.mkdirs();
+        tileWorkers = Math.max(1, threads / Math.max(1, files.length));
+
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(() -> renderFile(file));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        int failed = 0;
+        try {
+            for (Future<String> result : pool.invokeAll(tasks)) {
+                try {
+                    System.out.println(result.get());
+                } catch (ExecutionException e) {
+                    System.err.println(e.getCause().getMessage());
+                    failed++;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d images in %.2f s (%.1f images/s, %d threads), %d failed%n",
+                files.length - failed, seconds, (files.length - failed) / seconds, threads, failed);
+        return failed == 0;
+    }
+
+    private String renderFile(File file) throws IOException {
+        long start = System.nanoTime();
+        if (format.equals("svg")) {
+            return writeSvg(file, start);
+        }
+        List<Shape> shapes = new ArrayList<>();
+        int invalidLines = 0;
+        try (CanvasReader reader = CanvasReader.open(file, tileWorkers)) {
+            Shape shape;
+            while ((shape = reader.next()) != null) {
+                shapes.add(shape);
+            }
+            invalidLines = reader.getErrorCount();
+        } catch (IOException e) {
+            throw new IOException(file.getName() + ": " + e.getMessage(), e);
+        }
+
+        // Fit the canvas into the requested size, or render it 1:1
+        Rectangle extent = CanvasRenderer.extent(shapes);
+        int imageWidth = width > 0 ? width : extent.width;
+        int imageHeight = height > 0 ? height : extent.height;
+        double scale = width > 0 ? Math.min((double) width / extent.width, (double) height / extent.height) : 1;
+
+        String name = file.getName().replaceFirst("\\.[^.]*$", "") + "." + format;
+        File output = new File(outputDir, name);
+        if (tileSize > 0 && format.equals("png")) {
+            // Stream the tiles to the file, the image is never in memory as a whole
+            TiledExporter exporter = new TiledExporter(shapes, extent.getLocation(), imageWidth, imageHeight, scale, Color.WHITE, tileSize, tileWorkers);
+            try (OutputStream out = new FileOutputStream(output)) {
+                exporter.write(out, percent -> { }, () -> false);
+            }
+        } else {
+            BufferedImage image = CanvasRenderer.render(shapes, extent.getLocation(), imageWidth, imageHeight, scale, Color.WHITE, tileSize);
+            if (!ImageIO.write(image, format, output)) {
+                throw new IOException(file.getName() + ": no image writer for " + format);
+            }
+        }
+        return String.format("%s -> %s (%d shapes%s, %dx%d, %.0f ms)", file.getName(), name, shapes.size(),
+                invalidLines > 0 ? ", " + invalidLines + " invalid lines" : "", imageWidth, imageHeight, (System.nanoTime() - start) / 1e6);
+    }
+
+    // Two passes over the file, one for the bounds and one to write the shapes, so a binary or
+    // text canvas is never in memory. A tiled canvas is, each pass reads all of its tiles to give
+    // the shapes in canvas order (see TiledCanvasReader.next). --size sets the size the image is shown at.
+    private String writeSvg(File file, long start) throws IOException {
+        Rectangle area = null;
+        int count = 0;
+        try (CanvasReader reader = CanvasReader.open(file, tileWorkers)) {
+            Shape shape;
+            while ((shape = reader.next()) != null) {
+                if (area == null) {
+                    area = shape.getBounds();
+                } else {
+                    area.add(shape.getBounds());
+                }
+                count++;
+            }
+        }
+        if (area == null) {
+            area = new Rectangle(0, 0, 1, 1);
+        }
+        area.width = Math.max(area.width, 1);
+        area.height = Math.max(area.height, 1);
+        double scale = width > 0 ? Math.min((double) width / area.width, (double) height / area.height) : 1;
+        int imageWidth = (int) Math.ceil(area.width * scale);
+        int imageHeight = (int) Math.ceil(area.height * scale);
+
+        String name = file.getName().replaceFirst("\\.[^.]*$", "") + ".svg";
+        int invalidLines;
+        try (CanvasReader reader = CanvasReader.open(file, tileWorkers);
+             SvgWriter writer = new SvgWriter(new FileOutputStream(new File(outputDir, name)), area, imageWidth, imageHeight, 0xFFFFFF)) {
+            Shape shape;
+            while ((shape = reader.next()) != null) {
+                writer.write(shape);
+            }
+            invalidLines = reader.getErrorCount();
+        } catch (IOException e) {
+            throw new IOException(file.getName() + ": " + e.getMessage(), e);
+        }
+        return String.format("%s -> %s (%d shapes%s, %dx%d, %.0f ms)", file.getName(), name, count,
+                invalidLines > 0 ? ", " + invalidLines + " invalid lines" : "", imageWidth, imageHeight, (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,147 @@
+package editor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+// Binary canvas file (.vgc), all values big-endian:
+//   header: magic "VGC1", int version, long shape count
+//   record: byte type tag (ShapeType.code), 4 ints of geometry, int packed RGB
+// A group is a GROUP record (child count, offset x, offset y) followed by the records of its
+// children; the count in the header is the number of records.
+class BinaryCanvas {
+    static final int MAGIC = 0x56474331; // "VGC1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8;
+    static final int RECORD_SIZE = 1 + 4 * 4 + 4;
+
+    // Check the magic number, so files are recognized whatever their extension
+    public static boolean isBinary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
+
+// Writes records through a buffer, the shape count in the header is filled in on close
+class BinaryCanvasWriter implements CanvasWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count = 0;
+
+    public BinaryCanvasWriter(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(BinaryCanvas.MAGIC).putInt(BinaryCanvas.VERSION).putLong(0);
+    }
+
+    @Override
+    public void write(Shape shape) throws IOException {
+        if (buffer.remaining() < BinaryCanvas.RECORD_SIZE) {
+            flush();
+        }
+        shape.write(buffer);
+        count++;
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            for (int i = 0; i < group.size(); i++) {
+                write(group.getChild(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(8).putLong(0, count);
+            channel.write(header, 8);
+            channel.force(false); // On disk before the caller renames it over an older file
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+// Reads the records of a binary canvas through memory-mapped windows of the file
+class BinaryCanvasReader implements CanvasReader {
+    private static final int WINDOW_RECORDS = (64 << 20) / BinaryCanvas.RECORD_SIZE; // ~64 MB per mapping
+
+    private final FileChannel channel;
+    private final long count;
+    private long nextRecord = 0;
+    private MappedByteBuffer window;
+
+    public BinaryCanvasReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(BinaryCanvas.HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            if (header.remaining() < BinaryCanvas.HEADER_SIZE || header.getInt() != BinaryCanvas.MAGIC) {
+                throw new IOException("Not a canvas file");
+            }
+            int version = header.getInt();
+            if (version != BinaryCanvas.VERSION) {
+                throw new IOException("Unsupported canvas version " + version);
+            }
+            count = header.getLong();
+            if (count < 0 || BinaryCanvas.HEADER_SIZE + count * BinaryCanvas.RECORD_SIZE > channel.size()) {
+                throw new IOException("Canvas file is truncated");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Number of shapes in the file
+    public long size() {
+        return count;
+    }
+
+    @Override
+    public double getProgress() {
+        return count == 0 ? 1 : (double) nextRecord / count;
+    }
+
+    @Override
+    public Shape next() throws IOException {
+        if (nextRecord == count) {
+            return null;
+        }
+        if (window == null || !window.hasRemaining()) {
+            long records = Math.min(WINDOW_RECORDS, count - nextRecord);
+            window = channel.map(FileChannel.MapMode.READ_ONLY,
+                    BinaryCanvas.HEADER_SIZE + nextRecord * BinaryCanvas.RECORD_SIZE, records * BinaryCanvas.RECORD_SIZE);
+        }
+        Shape shape = Shape.read(window);
+        if (shape == null) {
+            throw new IOException("Unknown shape type in record " + nextRecord);
+        }
+        nextRecord++;
+        return shape;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,91 @@
+package editor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+
+// Shapes of a canvas file, read one at a time
+interface CanvasReader extends Closeable {
+    Shape next() throws IOException;        // Next shape, or null at the end of the file
+    double getProgress();                   // Part of the file read so far, from 0 to 1
+
+    // Number of invalid lines skipped so far, the formats without lines have none
+    default int getErrorCount() {
+        return 0;
+    }
+
+    default List<String> getErrors() {
+        return Collections.emptyList();
+    }
+
+    static CanvasReader open(File file) throws IOException {
+        return open(file, Integer.getInteger("load.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Text files larger than a chunk are parsed with the given number of threads
+    static CanvasReader open(File file, int threads) throws IOException {
+        if (BinaryCanvas.isBinary(file)) {
+            return new GroupingReader(new BinaryCanvasReader(file));
+        }
+        if (TiledCanvas.isTiled(file)) {
+            return new TiledCanvasReader(file); // Groups are put together by the reader
+        }
+        if (threads > 1 && file.length() > ParallelTextCanvasReader.CHUNK_SIZE
+                && ParallelTextCanvasReader.supports(Charset.defaultCharset())) {
+            return new GroupingReader(new ParallelTextCanvasReader(file, threads));
+        }
+        return new GroupingReader(new TextCanvasReader(file));
+    }
+}
+
+// The formats give a group as a header followed by its children, each a shape of its own.
+// This puts them back into groups, after the shapes are in order again (a group may span
+// chunks of a parallel read).
+class GroupingReader implements CanvasReader {
+    private final CanvasReader in;
+
+    GroupingReader(CanvasReader in) {
+        this.in = in;
+    }
+
+    @Override
+    public Shape next() throws IOException {
+        Shape shape = in.next();
+        return shape instanceof Group ? readGroup((Group) shape) : shape;
+    }
+
+    private Group readGroup(Group header) throws IOException {
+        Shape[] children = new Shape[header.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = next(); // Groups in groups too
+            if (children[i] == null) {
+                throw new IOException("Canvas file ends inside a group");
+            }
+        }
+        return new Group(children, header.getOffsetX(), header.getOffsetY());
+    }
+
+    @Override
+    public double getProgress() {
+        return in.getProgress();
+    }
+
+    @Override
+    public int getErrorCount() {
+        return in.getErrorCount();
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return in.getErrors();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
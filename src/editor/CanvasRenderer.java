@@ -0,0 +1,164 @@
+package editor;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.List;
+
+
+// Draws lists of shapes, for the editor cache as well as for exports outside of the editor
+class CanvasRenderer {
+    // Shapes at most this many pixels wide and high on screen are written straight into the image
+    private static final double LOD_SIZE = 4;
+
+    // Draw the shapes that intersect area (in canvas coordinates), in list order, leaving out skip.
+    // Returns the number of shapes drawn.
+    static int draw(Graphics2D g, List<Shape> shapes, Rectangle area, Shape skip) {
+        beginPass(g);
+        int drawn = 0;
+        for (Shape shape : shapes) {
+            if (shape != skip && shape.intersects(area)) {
+                shape.draw(g);
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    // Draw the shapes that reach into screenArea of image. g draws into image and already has the view
+    // (scale and translation) applied. When zoomed out, shapes that come out at most LOD_SIZE pixels
+    // on screen are written straight into the pixels of the image: lines as the few pixels along
+    // them, rectangles and circles as their block of pixels (a single pixel when they are smaller).
+    // At that size this looks the same and skips the rasterizer, so a zoomed-out view of a huge
+    // canvas costs about one pass over the list. Draw order is kept, later shapes still cover earlier ones.
+    // Returns the number of shapes drawn, either way.
+    static int drawView(Graphics2D g, BufferedImage image, Rectangle screenArea, List<Shape> shapes, Shape skip) {
+        AffineTransform view = g.getTransform();
+        double scale = view.getScaleX();
+        Rectangle area = toCanvas(screenArea, view);
+        if (scale >= 1 || image.getType() != BufferedImage.TYPE_INT_RGB) {
+            return draw(g, shapes, area, skip);
+        }
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int width = image.getWidth();
+        Rectangle clip = screenArea.intersection(new Rectangle(width, image.getHeight()));
+        double tx = view.getTranslateX(), ty = view.getTranslateY();
+        double lodSize = LOD_SIZE / scale; // in canvas units
+        beginPass(g);
+        int drawn = 0;
+        for (Shape shape : shapes) {
+            if (shape != skip && shape.intersects(area)) {
+                drawn++;
+                Rectangle bounds = shape.getBounds();
+                if (bounds.width > lodSize || bounds.height > lodSize) {
+                    shape.draw(g);
+                } else if (shape instanceof Line) {
+                    Line line = (Line) shape;
+                    plotLine(pixels, width, clip, shape.getRGB(),
+                            (int) Math.floor(line.getEndX(LineEnd.START) * scale + tx), (int) Math.floor(line.getEndY(LineEnd.START) * scale + ty),
+                            (int) Math.floor(line.getEndX(LineEnd.END) * scale + tx), (int) Math.floor(line.getEndY(LineEnd.END) * scale + ty));
+                } else {
+                    int x0 = (int) Math.floor(bounds.x * scale + tx);
+                    int y0 = (int) Math.floor(bounds.y * scale + ty);
+                    int x1 = Math.max(x0 + 1, (int) Math.ceil((bounds.x + bounds.width) * scale + tx));
+                    int y1 = Math.max(y0 + 1, (int) Math.ceil((bounds.y + bounds.height) * scale + ty));
+                    fillBlock(pixels, width, clip, shape.getRGB(), x0, y0, x1, y1);
+                }
+            }
+        }
+        return drawn;
+    }
+
+    // Pixels from (x0, y0) to (x1, y1), for lines a few pixels long
+    private static void plotLine(int[] pixels, int width, Rectangle clip, int rgb, int x0, int y0, int x1, int y1) {
+        int steps = Math.max(Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0)), 1);
+        for (int i = 0; i <= steps; i++) {
+            int x = x0 + Math.round((float) (x1 - x0) * i / steps);
+            int y = y0 + Math.round((float) (y1 - y0) * i / steps);
+            if (clip.contains(x, y)) {
+                pixels[y * width + x] = rgb;
+            }
+        }
+    }
+
+    // Pixels of [x0, x1) x [y0, y1) that are inside clip
+    private static void fillBlock(int[] pixels, int width, Rectangle clip, int rgb, int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, clip.x);
+        y0 = Math.max(y0, clip.y);
+        x1 = Math.min(x1, clip.x + clip.width);
+        y1 = Math.min(y1, clip.y + clip.height);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                pixels[y * width + x] = rgb;
+            }
+        }
+    }
+
+    // Render state every pass starts from. The line stroke is set once and left on for fills too,
+    // so a fill comes out the same whichever shape was drawn before it, also across tiles and
+    // dirty areas. Shapes then only change the color, and only when it differs.
+    static void beginPass(Graphics2D g) {
+        g.setStroke(Line.STROKE);
+    }
+
+    // Union of the bounds of the shapes, at least 1 x 1 (at the origin if there are none)
+    static Rectangle extent(List<Shape> shapes) {
+        Rectangle extent = null;
+        for (Shape shape : shapes) {
+            if (extent == null) {
+                extent = shape.getBounds();
+            } else {
+                extent.add(shape.getBounds());
+            }
+        }
+        if (extent == null) {
+            extent = new Rectangle(0, 0, 1, 1);
+        }
+        extent.width = Math.max(extent.width, 1);
+        extent.height = Math.max(extent.height, 1);
+        return extent;
+    }
+
+    // Image transform that puts the canvas point origin at the top left, scaled
+    static AffineTransform imageView(Point origin, double scale) {
+        return new AffineTransform(scale, 0, 0, scale, -origin.x * scale, -origin.y * scale);
+    }
+
+    // Render the canvas from origin on, scaled, to an image of width x height. With tileSize > 0
+    // the image is drawn tile by tile, each tile only drawing the shapes that reach into it.
+    static BufferedImage render(List<Shape> shapes, Point origin, int width, int height, double scale, Color background, int tileSize) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        AffineTransform view = imageView(origin, scale);
+        int tile = tileSize > 0 ? tileSize : Math.max(width, height);
+        for (int y = 0; y < height; y += tile) {
+            for (int x = 0; x < width; x += tile) {
+                Rectangle tileArea = new Rectangle(x, y, Math.min(tile, width - x), Math.min(tile, height - y));
+                Graphics2D g = image.createGraphics();
+                g.setClip(tileArea);
+                g.setColor(background);
+                g.fill(tileArea);
+                g.transform(view);
+                draw(g, shapes, toCanvas(tileArea, view), null);
+                g.dispose();
+            }
+        }
+        return image;
+    }
+
+    // Area of the canvas that ends up in an image area at the given scale
+    static Rectangle toCanvas(Rectangle imageArea, double scale) {
+        return toCanvas(imageArea, AffineTransform.getScaleInstance(scale, scale));
+    }
+
+    // Same for a view that is scaled and translated
+    static Rectangle toCanvas(Rectangle imageArea, AffineTransform view) {
+        double scale = view.getScaleX();
+        double tx = view.getTranslateX(), ty = view.getTranslateY();
+        int x = (int) Math.floor((imageArea.x - tx) / scale);
+        int y = (int) Math.floor((imageArea.y - ty) / scale);
+        return new Rectangle(x, y,
+                (int) Math.ceil((imageArea.x + imageArea.width - tx) / scale) - x + 1,
+                (int) Math.ceil((imageArea.y + imageArea.height - ty) / scale) - y + 1);
+    }
+}
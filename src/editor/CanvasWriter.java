@@ -0,0 +1,72 @@
+package editor;
+
+import java.io.*;
+
+
+// Writes shapes to a canvas file one at a time
+interface CanvasWriter extends Closeable {
+    void write(Shape shape) throws IOException;
+
+    static CanvasWriter open(File file, boolean text) throws IOException {
+        return open(file, text, null);
+    }
+
+    // palette is used by the text format, null to write the RGB values on every line
+    static CanvasWriter open(File file, boolean text, Palette palette) throws IOException {
+        return text ? new TextCanvasWriter(file, palette) : new BinaryCanvasWriter(file);
+    }
+}
+
+// One shape per line, in the format of Shape.toString, the children of a group on the lines after it.
+// With a palette its colors come first as "COLOR index R G B" lines, and shape lines end with
+// "@index" instead of the RGB values (see Palette).
+class TextCanvasWriter implements CanvasWriter {
+    private final BufferedWriter out;
+    private final Palette palette;
+
+    public TextCanvasWriter(File file) throws IOException {
+        this(file, null);
+    }
+
+    // The palette must have the colors of all shapes written, shapes with other colors are written with RGB
+    public TextCanvasWriter(File file, Palette palette) throws IOException {
+        out = new BufferedWriter(new FileWriter(file), 1 << 16);
+        this.palette = palette;
+        if (palette != null) {
+            for (int i = 0; i < palette.size(); i++) {
+                int rgb = palette.getRGB(i);
+                out.write("COLOR " + i + " " + (rgb >> 16) + " " + ((rgb >> 8) & 0xFF) + " " + (rgb & 0xFF));
+                out.newLine();
+            }
+        }
+    }
+
+    @Override
+    public void write(Shape shape) throws IOException {
+        String line = shape.toString();
+        int index = palette == null || shape instanceof Group ? -1 : palette.indexOf(shape.getRGB());
+        if (index >= 0) { // Replace the last three tokens, the RGB values
+            int end = line.length();
+            for (int i = 0; i < 3; i++) {
+                end = line.lastIndexOf(' ', end - 1);
+            }
+            out.write(line, 0, end + 1);
+            out.write('@');
+            out.write(Integer.toString(index));
+        } else {
+            out.write(line);
+        }
+        out.newLine();
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            for (int i = 0; i < group.size(); i++) {
+                write(group.getChild(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
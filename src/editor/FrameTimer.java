@@ -0,0 +1,44 @@
+package editor;
+
+// Duration statistics over the last frames painted by DrawPanel
+class FrameTimer {
+    private static final int WINDOW = 60;
+
+    private final long[] samples = new long[WINDOW]; // ring buffer of frame durations in nanoseconds
+    private long frames = 0;
+
+    public void record(long nanos) {
+        samples[(int) (frames % WINDOW)] = nanos;
+        frames++;
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    public double averageMillis() {
+        int count = (int) Math.min(frames, WINDOW);
+        if (count == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += samples[i];
+        }
+        return total / 1e6 / count;
+    }
+
+    public double maxMillis() {
+        int count = (int) Math.min(frames, WINDOW);
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Frame: %.2f ms avg, %.2f ms max", averageMillis(), maxMillis());
+    }
+}
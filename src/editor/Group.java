@@ -0,0 +1,246 @@
+package editor;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+
+// Shapes that are moved, recolored and drawn as one. The children keep the coordinates they
+// had when they were grouped and the group adds an offset to them, so moving a group is O(1)
+// whatever its size, and the bounds of the children are computed once. The children are never
+// changed after grouping (a recolor replaces them), so copies of a group share them and copy()
+// is O(1) too, which keeps snapshots of the shape list cheap.
+//
+// Large groups are drawn from a sprite: the children rendered once into an image at the scale
+// they are drawn at, which later draws at that scale copy as a single image. Moving the group
+// keeps the sprite, a recolor or another scale (zoom) makes a new one.
+//
+// In files a group is a header (type GROUP, child count and offset) followed by its children,
+// which may be groups themselves. write() and toString() give the header only, the canvas
+// writers add the children after it and GroupingReader puts them back together.
+class Group implements Shape {
+    private static final int SPRITE_MIN_CHILDREN = 32; // Smaller groups draw as fast without one
+    private static final int MAX_SPRITE_PIXELS = 1 << 22; // 16 MB, larger on screen draws the children
+    private static final int SPRITE_MARGIN = 1; // Pixels around the bounds for rounding
+
+    private Shape[] children; // In drawing order, at their place without the offset
+    private final Rectangle bounds; // Of the children, without the offset
+    private int dx, dy; // Offset
+    private volatile Sprite sprite; // Groups in snapshots are drawn by export threads as well
+    private double lastScale = Double.NaN; // Scale of the last draw without a sprite
+
+    // The children belong to the group from now on, there must be at least one
+    public Group(Shape[] children, int dx, int dy) {
+        this(children, boundsOf(children), dx, dy);
+    }
+
+    private Group(Shape[] children, Rectangle bounds, int dx, int dy) {
+        this.children = children;
+        this.bounds = bounds;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    // Header of a group read from a file, with room for its children (see GroupingReader)
+    static Group header(int count, int dx, int dy) {
+        return new Group(new Shape[count], null, dx, dy);
+    }
+
+    private static Rectangle boundsOf(Shape[] children) {
+        Rectangle bounds = children[0].getBounds();
+        for (int i = 1; i < children.length; i++) {
+            bounds.add(children[i].getBounds());
+        }
+        return bounds;
+    }
+
+    public int size() {
+        return children.length;
+    }
+
+    // The children without the offset, must not be changed
+    Shape getChild(int i) {
+        return children[i];
+    }
+
+    public int getOffsetX() {
+        return dx;
+    }
+
+    public int getOffsetY() {
+        return dy;
+    }
+
+    // New copies of the children where the group shows them, e.g. to ungroup it
+    public Shape[] ungroup() {
+        Shape[] shapes = new Shape[children.length];
+        for (int i = 0; i < children.length; i++) {
+            shapes[i] = children[i].copy();
+            shapes[i].move(dx, dy);
+        }
+        return shapes;
+    }
+
+    // Take the children of a copy of this group made before a recolor, to undo it
+    void restoreColors(Group before) {
+        children = before.children;
+        sprite = before.sprite;
+    }
+
+    @Override
+    public void draw(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        if (drawSprite(g2)) {
+            return;
+        }
+        g2.translate(dx, dy);
+        Rectangle clip = g2.getClipBounds(); // Children outside of it are skipped
+        for (Shape child : children) {
+            if (clip == null || child.intersects(clip)) {
+                child.draw(g2);
+            }
+        }
+        g2.translate(-dx, -dy);
+    }
+
+    // Draw the sprite if the group has one for this scale, or make one if it was drawn at this
+    // scale before (a single draw at a scale, like a one-off export, is not worth an image)
+    private boolean drawSprite(Graphics2D g) {
+        AffineTransform view = g.getTransform();
+        if (children.length < SPRITE_MIN_CHILDREN
+                || (view.getType() & ~(AffineTransform.TYPE_TRANSLATION | AffineTransform.TYPE_UNIFORM_SCALE)) != 0) {
+            return false;
+        }
+        double scale = view.getScaleX();
+        Sprite current = sprite;
+        if (current == null || current.scale != scale) {
+            if (scale != lastScale) {
+                lastScale = scale;
+                return false;
+            }
+            current = Sprite.render(children, bounds, scale, g.getRenderingHints());
+            if (current == null) {
+                return false; // Too large at this scale
+            }
+            sprite = current;
+        }
+        // Whole pixels on screen, so the image is copied as it is
+        double x = Math.floor(view.getTranslateX() + (bounds.x + dx) * scale) - SPRITE_MARGIN;
+        double y = Math.floor(view.getTranslateY() + (bounds.y + dy) * scale) - SPRITE_MARGIN;
+        AffineTransform place = new AffineTransform(1 / scale, 0, 0, 1 / scale,
+                (x - view.getTranslateX()) / scale, (y - view.getTranslateY()) / scale);
+        g.drawImage(current.image, place, null);
+        return true;
+    }
+
+    // The children drawn at a scale, with the top left of the bounds at (SPRITE_MARGIN, SPRITE_MARGIN)
+    private static final class Sprite {
+        final BufferedImage image;
+        final double scale;
+
+        private Sprite(BufferedImage image, double scale) {
+            this.image = image;
+            this.scale = scale;
+        }
+
+        static Sprite render(Shape[] children, Rectangle bounds, double scale, RenderingHints hints) {
+            long width = (long) Math.ceil(bounds.width * scale) + 2 * SPRITE_MARGIN + 1;
+            long height = (long) Math.ceil(bounds.height * scale) + 2 * SPRITE_MARGIN + 1;
+            if (width * height > MAX_SPRITE_PIXELS) {
+                return null;
+            }
+            BufferedImage image = new BufferedImage((int) width, (int) height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHints(hints);
+            g.translate(SPRITE_MARGIN - bounds.x * scale, SPRITE_MARGIN - bounds.y * scale);
+            g.scale(scale, scale);
+            CanvasRenderer.beginPass(g);
+            for (Shape child : children) {
+                child.draw(g);
+            }
+            g.dispose();
+            return new Sprite(image, scale);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GROUP " + children.length + " " + dx + " " + dy;
+    }
+
+    @Override
+    public void write(ByteBuffer out) {
+        out.put(ShapeType.GROUP.code);
+        out.putInt(children.length).putInt(dx).putInt(dy).putInt(0);
+        out.putInt(0);
+    }
+
+    @Override
+    public int getCenterX() {
+        return bounds.x + bounds.width / 2 + dx;
+    }
+
+    @Override
+    public int getCenterY() {
+        return bounds.y + bounds.height / 2 + dy;
+    }
+
+    // Color of the first child, a group that was recolored has one color
+    @Override
+    public int getRGB() {
+        return children[0].getRGB();
+    }
+
+    // Replaces the children with recolored copies, copies of the group keep the old ones
+    @Override
+    public void setRGB(int rgb) {
+        Shape[] recolored = new Shape[children.length];
+        for (int i = 0; i < children.length; i++) {
+            recolored[i] = children[i].copy();
+            recolored[i].setRGB(rgb);
+        }
+        children = recolored;
+        sprite = null;
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(bounds.x + dx, bounds.y + dy, bounds.width, bounds.height);
+    }
+
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(bounds.x + dx, bounds.y + dy, bounds.width, bounds.height);
+    }
+
+    // Children are tested from the top down, the first one hit ends the search
+    @Override
+    public boolean hit(int x, int y, int tolerance) {
+        x -= dx;
+        y -= dy;
+        if ((long) x < (long) bounds.x - tolerance || (long) x > (long) bounds.x + bounds.width + tolerance
+                || (long) y < (long) bounds.y - tolerance || (long) y > (long) bounds.y + bounds.height + tolerance) {
+            return false;
+        }
+        for (int i = children.length - 1; i >= 0; i--) {
+            if (children[i].hit(x, y, tolerance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Shape copy() {
+        Group copy = new Group(children, bounds, dx, dy);
+        copy.sprite = sprite;
+        return copy;
+    }
+
+    @Override
+    public void move(int dx, int dy) {
+        this.dx += dx;
+        this.dy += dy;
+    }
+}
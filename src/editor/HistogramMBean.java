@@ -0,0 +1,14 @@
+package editor;
+
+// JMX view of a Histogram, registered as editor:type=Metrics,name=... (public, as JMX requires)
+public interface HistogramMBean {
+    String getUnit();
+    long getCount();
+    long getTotal();
+    double getMean();
+    long getMax();
+    long getP50();          // Percentiles are upper bounds, at most 1/8 above the exact value
+    long getP90();
+    long getP99();
+    void reset();
+}
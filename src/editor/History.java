@@ -0,0 +1,79 @@
+package editor;
+
+import java.util.ArrayDeque;
+
+
+// A change to the canvas that can be undone and redone. Commands hold deltas or references
+// to existing shape data, never copies of the whole canvas.
+interface Command {
+    void undo();
+    void redo();
+    long size();                            // Approximate memory kept alive by the command, in bytes
+}
+
+// Undo and redo stacks bounded by a number of steps and an estimate of the memory they hold.
+// When a new command goes over either budget, the oldest commands are dropped. The newest one is
+// always kept, even if it is over the memory budget alone (see fits).
+class History {
+    private final ArrayDeque<Command> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Command> redoStack = new ArrayDeque<>();
+    private final int maxSteps;
+    private final long maxBytes;
+    private long bytes = 0; // size of all commands on both stacks
+
+    public History(int maxSteps, long maxBytes) {
+        this.maxSteps = maxSteps;
+        this.maxBytes = maxBytes;
+    }
+
+    // Add a command that was just carried out, this drops everything that could be redone
+    public void record(Command command) {
+        for (Command dropped : redoStack) {
+            bytes -= dropped.size();
+        }
+        redoStack.clear();
+        undoStack.addLast(command);
+        bytes += command.size();
+        while (undoStack.size() > 1 && (undoStack.size() > maxSteps || bytes > maxBytes)) {
+            bytes -= undoStack.removeFirst().size();
+        }
+    }
+
+    // Whether a command of this size fits the memory budget. One that does not stays undoable only
+    // until the next command is recorded, so callers should warn before a destructive one.
+    public boolean fits(long size) {
+        return size <= maxBytes;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    public void undo() {
+        Command command = undoStack.removeLast();
+        command.undo();
+        redoStack.addLast(command);
+    }
+
+    public void redo() {
+        Command command = redoStack.removeLast();
+        command.redo();
+        undoStack.addLast(command);
+    }
+
+    public int steps() {
+        return undoStack.size();
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+}
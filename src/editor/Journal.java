@@ -0,0 +1,474 @@
+package editor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+
+// Autosave: every change to the canvas is appended to a journal by a background thread, which
+// writes whatever has queued up since its last write in one go and syncs it once (group commit).
+// When the journal outgrows the canvas it is compacted into a snapshot, so autosaving costs the
+// same on a huge canvas as on an empty one. After a crash the canvas is the last snapshot with
+// the journal replayed on top of it.
+//
+// Files in the autosave folder, for generation g:
+//   snapshot-g.vgc  binary canvas, written to a .part file and renamed when complete
+//   journal-g.vgj   header: magic "VGJ1", int version
+//                   record: int length, int CRC32 of the body, body: byte op, op fields
+// A group is journaled as its children followed by a GROUP record that joins them.
+// A torn or corrupt record ends the replay, everything before it is kept.
+class Journal implements Closeable {
+    private static final int MAGIC = 0x56474A31; // "VGJ1"
+    private static final int VERSION = 1;
+    private static final byte ADD = 0, INSERT = 1, REMOVE = 2, MOVE = 3, LINE_END = 4, RECOLOR = 5, GROUP = 6;
+    private static final int MAX_BODY = 1 + 4 + BinaryCanvas.RECORD_SIZE; // INSERT is the longest record
+    private static final long MIN_COMPACT_BYTES = 1 << 20; // Small canvases are not compacted on every few edits
+
+    private final File dir;
+    private final Supplier<List<Shape>> canvas;   // Snapshot of the canvas that is not changed afterwards, called on the editing thread
+    private final Consumer<IOException> onError;  // Called on the writer thread, autosave stops after an error
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private FileChannel lockChannel;
+    private Thread writer;
+    private volatile boolean failed = false;
+    private boolean suspended = false;
+    private long journalBytes = 0;  // Queued since the last snapshot
+    private long snapshotBytes = 0; // Size of the last snapshot
+    private long generation = 0;
+    private int deferCompaction = 0; // Inside records that only fit the canvas together, e.g. a group
+
+    private static final Object CLOSE = new Object();
+
+    // Snapshot request, the journal continues in a new generation after it
+    private static class Snapshot {
+        final List<Shape> shapes;
+
+        Snapshot(List<Shape> shapes) {
+            this.shapes = shapes;
+        }
+    }
+
+    Journal(File dir, Supplier<List<Shape>> canvas, Consumer<IOException> onError) {
+        this.dir = dir;
+        this.canvas = canvas;
+        this.onError = onError;
+    }
+
+    // Folder of the autosave, can be changed with -Dautosave.dir=...
+    static File defaultDir() {
+        return new File(System.getProperty("autosave.dir",
+                System.getProperty("user.home") + File.separator + ".vector-graphics-editor" + File.separator + "autosave"));
+    }
+
+    // Take the autosave folder for this editor. Returns false if another editor is using it.
+    public boolean lock() throws IOException {
+        Files.createDirectories(dir.toPath());
+        lockChannel = FileChannel.open(new File(dir, "autosave.lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (lockChannel.tryLock() != null) {
+                return true;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Locked by this process
+        }
+        lockChannel.close();
+        lockChannel = null;
+        return false;
+    }
+
+    // Canvas left behind by a session that did not close normally, or null if there is none
+    public List<Shape> recover() throws IOException {
+        long latest = latestSnapshot();
+        if (latest < 0) {
+            return null;
+        }
+        generation = latest;
+        ShapeList shapes = new ShapeList((shape, copy) -> { }); // Records insert and remove in O(log n)
+        try (CanvasReader reader = CanvasReader.open(snapshotFile(latest))) {
+            Shape shape;
+            while ((shape = reader.next()) != null) {
+                shapes.add(shape);
+            }
+        }
+        File journal = journalFile(latest);
+        if (journal.exists()) {
+            replay(journal, shapes);
+        }
+        return shapes;
+    }
+
+    // Start autosaving from the given canvas, the files of earlier sessions are replaced
+    public void start(List<Shape> shapes) {
+        generation++;
+        writer = new Thread(this::writeLoop, "Autosave");
+        writer.setDaemon(true);
+        queue.add(new Snapshot(shapes));
+        snapshotBytes = (long) shapes.size() * BinaryCanvas.RECORD_SIZE;
+        writer.start();
+    }
+
+    // EDITS, called on the editing thread in the order they happen
+
+    public void add(Shape shape) {
+        if (!recording()) {
+            return;
+        }
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            deferCompaction++;
+            for (int i = 0; i < group.size(); i++) {
+                add(group.getChild(i));
+            }
+            group(-1, group); // The children are the last shapes now
+            deferCompaction--;
+            compactIfDue();
+            return;
+        }
+        append(record(ADD, 0, shape));
+    }
+
+    public void insert(int position, Shape shape) {
+        if (!recording()) {
+            return;
+        }
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            deferCompaction++;
+            for (int i = 0; i < group.size(); i++) {
+                insert(position + i, group.getChild(i));
+            }
+            group(position, group);
+            deferCompaction--;
+            compactIfDue();
+            return;
+        }
+        append(record(INSERT, position, shape));
+    }
+
+    // The shape at position was changed in a way no other record describes
+    public void replace(int position, Shape shape) {
+        if (!recording()) {
+            return;
+        }
+        deferCompaction++;
+        remove(position);
+        insert(position, shape);
+        deferCompaction--;
+        compactIfDue();
+    }
+
+    // Replace the children of group, just added from position on (-1: at the end), with the group
+    private void group(int position, Group group) {
+        append(record(GROUP, position, null).putInt(group.size()).putInt(group.getOffsetX()).putInt(group.getOffsetY()));
+    }
+
+    public void remove(int position) {
+        if (!recording()) {
+            return;
+        }
+        append(record(REMOVE, position, null));
+    }
+
+    public void move(int position, int dx, int dy) {
+        if (!recording()) {
+            return;
+        }
+        append(record(MOVE, position, null).putInt(dx).putInt(dy));
+    }
+
+    public void moveEnd(int position, LineEnd end, int x, int y) {
+        if (!recording()) {
+            return;
+        }
+        append(record(LINE_END, position, null).put((byte) end.ordinal()).putInt(x).putInt(y));
+    }
+
+    public void recolor(int position, int rgb) {
+        if (!recording()) {
+            return;
+        }
+        append(record(RECOLOR, position, null).putInt(rgb));
+    }
+
+    // Replace the whole canvas, e.g. after clear, load or undoing them
+    public void snapshot(List<Shape> shapes) {
+        if (writer == null || failed) {
+            return;
+        }
+        suspended = false;
+        journalBytes = 0;
+        snapshotBytes = (long) shapes.size() * BinaryCanvas.RECORD_SIZE;
+        queue.add(new Snapshot(shapes));
+    }
+
+    // Ignore edits until the next snapshot, e.g. while a load adds shapes in batches
+    public void suspend() {
+        suspended = true;
+    }
+
+    // Write what is queued and delete the autosave, the session ended normally
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            queue.add(CLOSE);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        if (lockChannel != null) {
+            lockChannel.close();
+            lockChannel = null;
+        }
+    }
+
+    // Edits are only encoded while they are written, not during a load or after a failure
+    private boolean recording() {
+        return writer != null && !suspended && !failed;
+    }
+
+    private ByteBuffer record(byte op, int position, Shape shape) {
+        ByteBuffer body = ByteBuffer.allocate(MAX_BODY).put(op);
+        if (op != ADD) {
+            body.putInt(position);
+        }
+        if (shape != null) {
+            shape.write(body);
+        }
+        return body;
+    }
+
+    private void append(ByteBuffer body) {
+        body.flip();
+        journalBytes += 8 + body.remaining();
+        queue.add(body);
+        compactIfDue();
+    }
+
+    // The canvas is only snapshot between records that leave it as it is on the editing thread
+    private void compactIfDue() {
+        if (deferCompaction == 0 && writer != null && !suspended && !failed
+                && journalBytes > Math.max(MIN_COMPACT_BYTES, snapshotBytes)) {
+            snapshot(canvas.get());
+        }
+    }
+
+    // WRITER THREAD
+
+    private void writeLoop() {
+        FileChannel journal = null;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        CRC32 crc = new CRC32();
+        ArrayList<Object> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Object item : batch) {
+                    if (item instanceof ByteBuffer) {
+                        ByteBuffer body = (ByteBuffer) item;
+                        if (buffer.remaining() < 8 + body.remaining()) {
+                            write(journal, buffer);
+                        }
+                        crc.reset();
+                        crc.update(body.array(), 0, body.limit());
+                        buffer.putInt(body.limit()).putInt((int) crc.getValue()).put(body);
+                    } else if (item instanceof Snapshot) {
+                        write(journal, buffer);
+                        if (journal != null) {
+                            journal.close();
+                            generation++;
+                        }
+                        journal = compact(((Snapshot) item).shapes);
+                    } else if (item == CLOSE) {
+                        write(journal, buffer);
+                        journal.close();
+                        deleteAll();
+                        return;
+                    }
+                }
+                batch.clear();
+                write(journal, buffer);
+                journal.force(false); // One sync for everything that queued up
+            }
+        } catch (IOException e) {
+            failed = true;
+            queue.clear();
+            onError.accept(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                // Already reported or closing anyway
+            }
+        }
+    }
+
+    // Write the snapshot of a new generation, then drop the files of older ones
+    private FileChannel compact(List<Shape> shapes) throws IOException {
+        File snapshot = snapshotFile(generation);
+        File partFile = new File(snapshot.getPath() + ".part");
+        try (CanvasWriter writer = CanvasWriter.open(partFile, false)) {
+            for (Shape shape : shapes) {
+                writer.write(shape);
+            }
+        }
+        Files.move(partFile.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel journal = FileChannel.open(journalFile(generation).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        journal.write(header);
+        journal.force(false);
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            long fileGeneration = generationOf(file.getName());
+            if (fileGeneration >= 0 && fileGeneration < generation) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        return journal;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void deleteAll() throws IOException {
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            if (generationOf(file.getName()) >= 0) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    // RECOVERY
+
+    private static void replay(File file, ShapeList shapes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            CRC32 crc = new CRC32();
+            byte[] body = new byte[MAX_BODY];
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > MAX_BODY) {
+                    return;
+                }
+                in.readFully(body, 0, length);
+                crc.reset();
+                crc.update(body, 0, length);
+                if ((int) crc.getValue() != checksum || !apply(ByteBuffer.wrap(body, 0, length), shapes)) {
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // Torn last record, the session ended while it was written
+        }
+    }
+
+    // Apply one record, false if it does not fit the canvas
+    private static boolean apply(ByteBuffer body, ShapeList shapes) {
+        byte op = body.get();
+        if (op == ADD) {
+            Shape shape = Shape.read(body);
+            return shape != null && !(shape instanceof Group) && shapes.add(shape);
+        }
+        if (op == INSERT) {
+            int position = body.getInt();
+            Shape shape = Shape.read(body);
+            if (shape == null || shape instanceof Group || position < 0 || position > shapes.size()) {
+                return false;
+            }
+            shapes.add(position, shape);
+            return true;
+        }
+        int position = body.getInt();
+        if (op == GROUP) {
+            int count = body.getInt();
+            if (position == -1) {
+                position = shapes.size() - count;
+            }
+            if (count <= 0 || position < 0 || position + count > shapes.size()) {
+                return false;
+            }
+            List<Shape> children = shapes.subList(position, position + count);
+            Group group = new Group(children.toArray(new Shape[0]), body.getInt(), body.getInt());
+            children.clear();
+            shapes.add(position, group);
+            return true;
+        }
+        if (position < 0 || position >= shapes.size()) {
+            return false;
+        }
+        if (op == REMOVE) {
+            shapes.remove(position);
+        } else if (op == MOVE) {
+            shapes.edit(position).move(body.getInt(), body.getInt());
+        } else if (op == LINE_END && shapes.get(position) instanceof Line) {
+            LineEnd end = LineEnd.values()[body.get() & 1];
+            ((Line) shapes.edit(position)).moveEnd(end, body.getInt(), body.getInt());
+        } else if (op == RECOLOR) {
+            shapes.edit(position).setRGB(body.getInt() & 0xFFFFFF);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private long latestSnapshot() {
+        long latest = -1;
+        File[] files = dir.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            if (file.getName().startsWith("snapshot-") && file.getName().endsWith(".vgc")) {
+                latest = Math.max(latest, generationOf(file.getName()));
+            }
+        }
+        return latest;
+    }
+
+    private File snapshotFile(long generation) {
+        return new File(dir, "snapshot-" + generation + ".vgc");
+    }
+
+    private File journalFile(long generation) {
+        return new File(dir, "journal-" + generation + ".vgj");
+    }
+
+    // Generation in the name of an autosave file, -1 for other files
+    private static long generationOf(String name) {
+        int dash = name.indexOf('-');
+        int dot = name.indexOf('.');
+        if (dash < 0 || dot < dash || !(name.startsWith("snapshot-") || name.startsWith("journal-"))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(dash + 1, dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,2079 @@
+package editor;
+
+import java.awt.*;
+import javax.swing.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import javax.imageio.*;
+
+enum ShapeType {
+    LINE(0), RECTANGLE(1), CIRCLE(2),
+    GROUP(3); // Only made by grouping shapes, tags group headers in files
+
+    // Tag of the shape in binary records (see BinaryCanvas), never reuse or change one
+    final byte code;
+
+    ShapeType(int code) {
+        this.code = (byte) code;
+    }
+
+    // The type with the tag, null if none has it
+    static ShapeType of(byte code) {
+        for (ShapeType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
+
+enum OperationType {
+    DRAW, EDIT
+}
+
+public class Main {
+    public static void main(String[] args) {
+        VectorGraphicsEditorWindow window = new VectorGraphicsEditorWindow();
+        window.setVisible(true);
+    }
+}
+
+class VectorGraphicsEditorWindow extends JFrame {
+    public VectorGraphicsEditorWindow() {
+        setTitle("Vector Graphics Editor");
+        setSize(800, 600);
+        setMinimumSize(new Dimension(800, 600));
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+        VectorGraphicsEditor editorPanel = new VectorGraphicsEditor();
+        add(editorPanel, BorderLayout.CENTER);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                editorPanel.drawPanel.stopAutosave();
+            }
+        });
+
+        setVisible(true);
+        editorPanel.drawPanel.startAutosave();
+    }
+}
+
+class VectorGraphicsEditor extends JPanel {
+    final DrawPanel drawPanel;
+    private final OperationPanel operationPanel;
+    private final ControlPanel controlPanel;
+
+    private ShapeType currentShape = ShapeType.LINE;
+    private OperationType currentOperation = OperationType.DRAW;
+    private Color currentColor = Color.BLACK;
+
+    public VectorGraphicsEditor() {
+        setLayout(new BorderLayout());
+
+        // Draw panel
+        drawPanel = new DrawPanel();
+        add(drawPanel, BorderLayout.CENTER);
+
+        // Operation panel
+        operationPanel = new OperationPanel();
+        add(operationPanel, BorderLayout.NORTH);
+
+        // Control panel
+        controlPanel = new ControlPanel();
+        add(controlPanel, BorderLayout.SOUTH);
+
+        // Keyboard shortcuts
+        InputMap inputMap = getInputMap(WHEN_IN_FOCUSED_WINDOW);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK), "resetView");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleOverlay");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "deleteSelection");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearSelection");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK), "group");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_G, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "ungroup");
+        getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.undo();
+            }
+        });
+        getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.redo();
+            }
+        });
+        getActionMap().put("resetView", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.resetView();
+            }
+        });
+        getActionMap().put("toggleOverlay", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.toggleOverlay();
+            }
+        });
+        getActionMap().put("deleteSelection", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.deleteSelection();
+            }
+        });
+        getActionMap().put("clearSelection", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.clearSelection();
+            }
+        });
+        getActionMap().put("group", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.groupSelection();
+            }
+        });
+        getActionMap().put("ungroup", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                drawPanel.ungroupSelection();
+            }
+        });
+    }
+
+    class DrawPanel extends JPanel 
+    {
+        private ShapeList shapes = new ShapeList(this::shapeCopied); // Snapshots of it are read by background work
+        private ShapeIndex index = new ShapeIndex(); // Grid over shapes for fast hit-testing
+        private Shape selectedShape = null; // Shape being drawn/edited dynamically
+        private LineEnd selectedLineEnd = null;
+        private int editPosition; // Position of selectedShape in the list during an edit
+        private Point lastClickPoint;
+        private Rectangle editStartBounds; // Bounds of the edited shape before it was moved
+        private Point editStartLineEnd; // Position of the selected line end before it was moved
+
+        // Area selection in EDIT mode: positions of the selected shapes, ascending, and their union bounds
+        private int[] selection = new int[0];
+        private Rectangle selectionBounds = null; // null if nothing is selected
+        private Rectangle band = null; // Rubber band being dragged, in canvas coordinates
+        private boolean banding = false; // Left drag that started on empty canvas
+        private Point selectionMoveStart = null; // Canvas point where a drag of the selection started
+        private Point selectionMoveOffset = null; // How far the selection preview was dragged from there
+        private final Stroke selectionStroke = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+                10, new float[] {4, 4}, 0);
+
+        // Undo budget, can be changed with -Dundo.maxSteps=... and -Dundo.maxMemoryMB=...
+        private final History history = new History(Integer.getInteger("undo.maxSteps", 1000),
+                Long.getLong("undo.maxMemoryMB", 256) << 20);
+
+        private BufferedImage cache; // Committed shapes, except the one being edited
+        private final Rectangle cacheDirty = new Rectangle(); // Area of the cache that is out of date
+        private Shape uncachedShape = null; // Shape being edited, drawn on top of the cache
+        private final FrameTimer frameTimer = new FrameTimer();
+        // The frame time label is updated a few times a second, not on every paint
+        private long shownFrames = 0; // Frames when the label was last updated
+        private final Timer frameLabelTimer = new Timer(250, e -> showFrameTime());
+
+        // Drag events only record the mouse position, the preview follows it at most once per frame
+        private static final int PREVIEW_FRAME_MS = 16;
+        private Point dragPoint; // Latest left-drag position on screen not yet shown, null if none
+        private long lastPreview; // System.nanoTime() of the last preview update
+        private final Timer previewTimer = new Timer(PREVIEW_FRAME_MS, e -> updatePreview());
+
+        // Debug overlay with the Metrics, toggled with F3 or on from the start with -Dmetrics.overlay=true
+        private final Rectangle overlayArea = new Rectangle(0, 0, 520, 56);
+        private int paintedShapes = 0; // Shapes drawn during the current paint
+        private final Timer overlayTimer = new Timer(250, e -> repaint(overlayArea));
+
+        private FileWorker<?> fileWorker = null; // Load or save running in the background
+        private final Journal journal = new Journal(Journal.defaultDir(), () -> shapes.snapshot(), this::autosaveFailed);
+        private final ThumbnailCache thumbnails = new ThumbnailCache(ThumbnailCache.defaultDir()); // Previews in the load dialog
+
+        private static final int HIT_TOLERANCE = 4; // Screen pixels a click may be off a shape
+        private static final int END_RADIUS = 8; // Screen pixels around a line end that grab the end
+        private static final int LOAD_BATCH_SIZE = 10_000; // Shapes added to the canvas at a time while loading
+        private static final int EXPORT_TILE_SIZE = 256;
+
+        // View: a canvas point p is shown at (p - viewOrigin) * zoom, mouse points are mapped back
+        private double zoom = 1;
+        private double viewX = 0, viewY = 0;
+        private Point panPoint; // Last mouse position of a pan with the middle button
+        private static final double MIN_ZOOM = 1 / 256.0, MAX_ZOOM = 32;
+        private static final double ZOOM_STEP = 1.25; // Per wheel notch
+    
+        public DrawPanel() {
+            addMouseListener(new MouseAdapter() {
+
+                // mouse pressed event
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    if (SwingUtilities.isMiddleMouseButton(e)) { // Middle button drag pans the view
+                        panPoint = e.getPoint();
+                        return;
+                    }
+                    if (tiledLoading()) {
+                        return; // View only until the shapes are all in place
+                    }
+                    lastClickPoint = toCanvas(e.getPoint()); // Store clicked point
+
+                    
+                    if (SwingUtilities.isRightMouseButton(e)) { // Right-click in any mode to delete a shape
+                        selectShape(lastClickPoint);
+                        // If a shape was found, remove it
+                        if (selectedShape != null) {
+                            clearSelection(); // Positions after it change
+                            perform(new DeleteCommand(positionOf(selectedShape, 0)));
+                            selectedShape = null;
+                        }
+                    } 
+                    else if (SwingUtilities.isLeftMouseButton(e)) { // Left-click 
+                        switch (currentOperation) {
+                            case DRAW:
+                                break;
+                            case EDIT:
+                                if (selectionBounds != null && selectionBounds.contains(lastClickPoint)) {
+                                    selectionMoveStart = lastClickPoint; // Drag the whole selection
+                                    break;
+                                }
+                                clearSelection();
+                                selectShape(lastClickPoint); // Select a shape to edit
+                                banding = selectedShape == null; // Nothing here, drag a rubber band
+                                if (selectedShape != null) {
+                                    editPosition = positionOf(selectedShape, 0);
+                                    selectedShape = shapes.edit(editPosition); // A copy if a snapshot still holds it
+                                    editStartBounds = selectedShape.getBounds();
+                                    if (selectedLineEnd != null) {
+                                        Line line = (Line) selectedShape;
+                                        editStartLineEnd = new Point(line.getEndX(selectedLineEnd), line.getEndY(selectedLineEnd));
+                                    }
+                                    uncachedShape = selectedShape; // Leave it out of the cache until released
+                                    invalidateCache(editStartBounds);
+                                }
+                                break;
+                        }
+                    }
+                }
+                
+                // mouse released event
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    if (SwingUtilities.isLeftMouseButton(e)) {
+                        updatePreview(); // Show the last drag position, even if its frame is not due
+                        previewTimer.stop();
+                    }
+                    switch (currentOperation) {
+                        case DRAW:
+                            if (SwingUtilities.isLeftMouseButton(e)) {
+                                if (selectedShape != null) {
+                                    addShape(selectedShape); // Add the finalized shape to the list
+                                    history.record(new AddCommand(shapes.size() - 1));
+                                    drawToCache(selectedShape);
+                                    repaintCanvas(selectedShape.getBounds()); // Repaint the area of the finalized shape
+                                }
+                                selectedShape = null;
+                            }
+                            break;
+                        case EDIT:
+                            if (SwingUtilities.isLeftMouseButton(e)) {
+                                if (banding) {
+                                    finishBand();
+                                } else if (selectionMoveStart != null) {
+                                    finishSelectionMove();
+                                } else if (selectedShape != null) {
+                                    Rectangle dirty = selectedShape.getBounds();
+                                    dirty.add(editStartBounds);
+                                    uncachedShape = null; // Back into the cache at its place in the list
+                                    invalidateCache(dirty);
+                                    repaintCanvas(dirty); // Repaint the old and new area of the edited shape
+                                    recordEdit();
+                                }
+                                selectedShape = null;
+                                selectedLineEnd = null;
+                            }
+                            break;
+                    }
+                }
+            });
+    
+            addMouseMotionListener(new MouseMotionAdapter() {
+                // mouse dragged event
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (panPoint != null && selectedShape == null && SwingUtilities.isMiddleMouseButton(e)) {
+                        pan(e.getX() - panPoint.x, e.getY() - panPoint.y);
+                        panPoint = e.getPoint();
+                        return;
+                    }
+                    if (SwingUtilities.isLeftMouseButton(e) && !tiledLoading()) {
+                        dragPoint = e.getPoint(); // Replaces a position that was not shown yet
+                        if (System.nanoTime() - lastPreview >= PREVIEW_FRAME_MS * 1_000_000L) {
+                            updatePreview(); // A frame has passed, show it without waiting for the timer
+                        }
+                        previewTimer.start();
+                    }
+                }
+            });
+
+            addMouseWheelListener(e -> zoomAt(e.getPoint(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation())));
+
+            if (Boolean.getBoolean("metrics.overlay")) {
+                overlayTimer.start();
+            }
+            frameLabelTimer.start();
+        }
+
+        private void showFrameTime() {
+            if (frameTimer.frames() != shownFrames) {
+                shownFrames = frameTimer.frames();
+                controlPanel.showFrameTime(frameTimer);
+            }
+        }
+
+        // OPERATIONS
+
+        // Move the preview to the latest drag position, if it changed since the last frame
+        private void updatePreview() {
+            if (dragPoint == null) {
+                return;
+            }
+            long start = System.nanoTime();
+            Point point = dragPoint;
+            dragPoint = null;
+            switch(currentOperation) {
+                case DRAW:
+                    dynamicDrawing(point); // Draw the shape dynamically
+                    break;
+                case EDIT:
+                    if (banding) {
+                        dynamicBand(point); // Stretch the rubber band
+                    } else if (selectionMoveStart != null) {
+                        dynamicSelectionMoving(point); // Drag the outline of the selection
+                    } else if (selectedShape instanceof Line && selectedLineEnd != null) {
+                        dynamicLineEndEditing(point); // Move the selected line end
+                    } else {
+                        dynamicMoving(point); // Move the selected shape
+                    }
+                    break;
+            }
+            lastPreview = System.nanoTime();
+            frameTimer.record(lastPreview - start);
+        }
+
+        // Dynamic drawing of new shapes when mouse is dragged
+        private void dynamicDrawing(Point mouse){
+            Graphics2D g = (Graphics2D) getGraphics();
+            g.transform(viewTransform());
+            g.setXORMode(getBackground()); // XOR mode for dynamic drawing (better visibility)
+            g.setColor(currentColor);
+
+            if (selectedShape != null) {
+                selectedShape.draw(g); // Erase the previous shape by drawing it in XOR mode
+            }
+            Point startPoint = lastClickPoint;
+            Point endPoint = toCanvas(mouse);
+
+            if (selectedShape != null) {
+                // Same object for the whole drag, one of the shapes created below
+                ((DrawnShape) selectedShape).reshape(startPoint.x, startPoint.y, endPoint.x, endPoint.y);
+            } else {
+                switch (currentShape) {
+                    case LINE:
+                        selectedShape = new Line(startPoint, endPoint, currentColor);
+                        break;
+                    case RECTANGLE:
+                        selectedShape = new Rect(startPoint, endPoint, currentColor);
+                        break;
+                    case CIRCLE:
+                        selectedShape = new Circle(startPoint, endPoint, currentColor);
+                        break;
+                }
+            }
+
+            selectedShape.draw(g);
+        
+            g.dispose();
+        };
+
+        // Dynamic display when moving shapes
+        private void dynamicMoving(Point mouse) {
+            Point clickPoint = toCanvas(mouse);
+
+            Graphics2D g = (Graphics2D) getGraphics();
+            g.transform(viewTransform());
+            g.setXORMode(getBackground()); // XOR mode for dynamic drawing (better visibility)
+            g.setColor(currentColor);
+
+            
+            if (selectedShape != null) {
+                selectedShape.draw(g); // Erase the previous shape by drawing it in XOR mode
+
+                int dx = clickPoint.x - lastClickPoint.x;
+                int dy = clickPoint.y - lastClickPoint.y;
+                lastClickPoint = clickPoint;
+
+                //move the shape and draw it at the new position
+                selectedShape = shapes.edit(editPosition); // Copied if a snapshot was taken since the last move
+                selectedShape.move(dx, dy);
+                index.update(selectedShape);
+                selectedShape.draw(g);
+            }
+        
+            g.dispose();
+        };
+
+        private void dynamicLineEndEditing(Point mouse) {
+            Graphics2D g = (Graphics2D) getGraphics();
+            g.transform(viewTransform());
+            g.setXORMode(getBackground()); // XOR mode for dynamic drawing (better visibility)
+            g.setColor(currentColor);
+        
+            if (selectedShape != null) {
+                selectedShape.draw(g); // Erase the previous shape by drawing it in XOR mode
+            }
+        
+            // Update the position of the selected line end
+            Point point = toCanvas(mouse);
+            selectedShape = shapes.edit(editPosition); // Copied if a snapshot was taken since the last move
+            ((Line) selectedShape).moveEnd(selectedLineEnd, point.x, point.y);
+            index.update(selectedShape);
+        
+            // draw the updated line
+            selectedShape.draw(g);
+        
+            g.dispose();
+        }
+        
+        private void dynamicBand(Point mouse) {
+            Graphics2D g = (Graphics2D) getGraphics();
+            g.transform(viewTransform());
+            g.setXORMode(getBackground());
+            g.setColor(Color.GRAY);
+            g.setStroke(new BasicStroke(0)); // Thinnest line at any zoom
+
+            if (band != null) {
+                g.draw(band); // Erase the previous band
+            }
+            Point point = toCanvas(mouse);
+            band = new Rectangle(lastClickPoint);
+            band.add(point);
+            g.draw(band);
+
+            g.dispose();
+        }
+
+        private void dynamicSelectionMoving(Point mouse) {
+            Graphics2D g = (Graphics2D) getGraphics();
+            g.transform(viewTransform());
+            g.setXORMode(getBackground());
+            g.setColor(Color.GRAY);
+            g.setStroke(new BasicStroke(0));
+
+            Rectangle outline = new Rectangle(selectionBounds);
+            if (selectionMoveOffset != null) {
+                outline.translate(selectionMoveOffset.x, selectionMoveOffset.y);
+                g.draw(outline); // Erase the previous outline
+            }
+            Point point = toCanvas(mouse);
+            selectionMoveOffset = new Point(point.x - selectionMoveStart.x, point.y - selectionMoveStart.y);
+            outline.setLocation(selectionBounds.x + selectionMoveOffset.x, selectionBounds.y + selectionMoveOffset.y);
+            g.draw(outline);
+
+            g.dispose();
+        }
+
+        private void finishBand() {
+            banding = false;
+            if (band == null) {
+                return; // A click on empty canvas, nothing to select
+            }
+            repaintCanvas(band); // Erase the band
+            selectArea(band);
+            band = null;
+        }
+
+        private void finishSelectionMove() {
+            Point offset = selectionMoveOffset;
+            selectionMoveStart = null;
+            selectionMoveOffset = null;
+            if (offset == null) {
+                return; // Clicked inside the selection without dragging
+            }
+            Rectangle outline = new Rectangle(selectionBounds);
+            outline.translate(offset.x, offset.y);
+            repaintCanvas(outline); // Erase the outline preview
+            if (offset.x != 0 || offset.y != 0) {
+                perform(new BatchMoveCommand(selection, offset.x, offset.y));
+            }
+        }
+
+        // Select every shape that intersects the area, returns how many
+        int selectArea(Rectangle area) {
+            clearSelection();
+            List<Shape> found = index.intersecting(area);
+            int[] positions = new int[found.size()];
+            Rectangle bounds = null;
+            int position = 0;
+            for (int i = 0; i < positions.length; i++) {
+                Shape shape = found.get(i);
+                position = positionOf(shape, position);
+                positions[i] = position;
+                if (bounds == null) {
+                    bounds = shape.getBounds();
+                } else {
+                    bounds.add(shape.getBounds());
+                }
+            }
+            selection = positions;
+            selectionBounds = bounds;
+            repaintSelection();
+            return positions.length;
+        }
+
+        // Position of a shape in the list, at or after from. The index orders ascend with the
+        // positions, so this is a binary search instead of a scan of the list.
+        private int positionOf(Shape shape, int from) {
+            long order = index.orderOf(shape);
+            int low = from, high = shapes.size() - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.orderOf(shapes.get(middle)) < order) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void clearSelection() {
+            repaintSelection(); // Erase the outline
+            if (selectionMoveOffset != null) { // Dropped in the middle of a drag
+                Rectangle outline = new Rectangle(selectionBounds);
+                outline.translate(selectionMoveOffset.x, selectionMoveOffset.y);
+                repaintCanvas(outline);
+            }
+            selection = new int[0];
+            selectionBounds = null;
+            selectionMoveStart = null;
+            selectionMoveOffset = null;
+        }
+
+        private void repaintSelection() {
+            if (selectionBounds != null) {
+                repaintCanvas(selectionBounds);
+            }
+        }
+
+        // Batch operations on the selection, each is one step in the history
+
+        public void recolorSelection(Color color) {
+            if (selection.length > 0 && !editing() && !loading()) {
+                perform(new BatchRecolorCommand(selection, color.getRGB() & 0xFFFFFF));
+            }
+        }
+
+        public void deleteSelection() {
+            if (selection.length > 0 && !editing() && !loading()) {
+                int[] positions = selection;
+                clearSelection();
+                perform(new BatchDeleteCommand(positions));
+            }
+        }
+
+        public void groupSelection() {
+            if (selection.length > 1 && !editing() && !loading()) {
+                int[] positions = selection;
+                clearSelection();
+                perform(new GroupCommand(positions));
+            }
+        }
+
+        // Ungroup the groups in the selection (one level)
+        public void ungroupSelection() {
+            if (editing() || loading()) {
+                return;
+            }
+            int[] groups = new int[selection.length];
+            int count = 0;
+            for (int position : selection) {
+                if (shapes.get(position) instanceof Group) {
+                    groups[count++] = position;
+                }
+            }
+            if (count > 0) {
+                clearSelection();
+                perform(new UngroupCommand(Arrays.copyOf(groups, count)));
+            }
+        }
+
+        // Find the topmost shape under the click point (selects one at a time)
+        Shape selectShape(Point point) {
+            long start = System.nanoTime();
+            int tolerance = (int) Math.ceil(HIT_TOLERANCE / zoom); // Same distance on screen at any zoom
+            selectedShape = index.topmostHit(point, tolerance);
+            selectedLineEnd = null;
+            int radius = (int) Math.ceil(END_RADIUS / zoom);
+            if (selectedShape instanceof Line
+                    && point.distance(selectedShape.getCenterX(), selectedShape.getCenterY()) > radius) {
+                selectedLineEnd = ShapeIndex.lineEndAt((Line) selectedShape, point, radius); // Line end selected
+            }
+            Metrics.SELECT_TIME.record(System.nanoTime() - start);
+            Metrics.SELECT_CANDIDATES.record(index.lastCandidates());
+            return selectedShape;
+        }
+
+        // All changes to the shape list go through here so the index stays in sync
+        void addShape(Shape shape) {
+            shapes.add(shape);
+            index.add(shape);
+            journal.add(shape);
+        }
+
+        private Shape removeShape(int position) {
+            Shape shape = shapes.remove(position);
+            index.remove(shape);
+            journal.remove(position);
+            return shape;
+        }
+
+        // Register count shapes just put at position in the list with orders between the shapes
+        // below and above them, renumbering the index if there is no room left there
+        private void indexShapes(int position, int count) {
+            Shape below = position > 0 ? shapes.get(position - 1) : null;
+            Shape above = position + count < shapes.size() ? shapes.get(position + count) : null;
+            long[] orders = index.ordersBetween(below, above, count);
+            if (orders == null) {
+                index.renumber(shapes);
+                orders = index.ordersBetween(below, above, count);
+            }
+            for (int i = 0; i < count; i++) {
+                index.add(shapes.get(position + i), orders[i]);
+            }
+        }
+
+        // The list copied a shape that a snapshot holds, so it can be changed: follow the copy
+        private void shapeCopied(Shape shape, Shape copy) {
+            index.replace(shape, copy);
+            if (selectedShape == shape) {
+                selectedShape = copy;
+            }
+            if (uncachedShape == shape) {
+                uncachedShape = copy;
+            }
+        }
+
+        // Redraw the area of a shape that changed outside of a mouse edit (undo, redo, delete)
+        private void shapeChanged(Rectangle area) {
+            invalidateCache(area);
+            repaintCanvas(area);
+        }
+
+        // UNDO / REDO
+
+        private static final long COMMAND_BYTES = 64; // Rough size of a command holding a few fields
+        private static final long SHAPE_BYTES = 120; // Rough size of a shape with its list slot and index entry
+
+        // In the middle of a mouse edit of a shape or the selection
+        private boolean editing() {
+            return selectedShape != null || selectionMoveStart != null;
+        }
+
+        public void undo() {
+            if (!editing() && !loading() && history.canUndo()) {
+                clearSelection();
+                history.undo();
+            }
+        }
+
+        public void redo() {
+            if (!editing() && !loading() && history.canRedo()) {
+                clearSelection();
+                history.redo();
+            }
+        }
+
+        // Carry out a command and put it in the history
+        private void perform(Command command) {
+            command.redo();
+            history.record(command);
+        }
+
+        // Record the move or line end edit that just finished
+        private void recordEdit() {
+            if (selectedLineEnd != null) {
+                Line line = (Line) selectedShape;
+                int x = line.getEndX(selectedLineEnd);
+                int y = line.getEndY(selectedLineEnd);
+                if (x != editStartLineEnd.x || y != editStartLineEnd.y) {
+                    history.record(new LineEndCommand(editPosition, selectedLineEnd, editStartLineEnd, new Point(x, y)));
+                    journal.moveEnd(editPosition, selectedLineEnd, x, y);
+                }
+            } else {
+                Rectangle bounds = selectedShape.getBounds();
+                int dx = bounds.x - editStartBounds.x;
+                int dy = bounds.y - editStartBounds.y;
+                if (dx != 0 || dy != 0) {
+                    history.record(new MoveCommand(editPosition, dx, dy));
+                    journal.move(editPosition, dx, dy);
+                }
+            }
+        }
+
+        // Commands find their shape by position: the history is undone and redone in order, so the
+        // list is the same as when the command was done. Shapes that come back from a command are
+        // added as copies, a snapshot taken in the meantime may still hold the removed object.
+        private class AddCommand implements Command {
+            private final int position;
+            private Shape shape; // While undone
+
+            AddCommand(int position) {
+                this.position = position;
+            }
+
+            @Override
+            public void undo() {
+                shape = removeShape(position);
+                shapeChanged(shape.getBounds());
+            }
+
+            @Override
+            public void redo() {
+                addShape(shape.copy()); // Undone last, so it is on top again
+                shapeChanged(shape.getBounds());
+                shape = null;
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + SHAPE_BYTES;
+            }
+        }
+
+        // Remembers the position in the list, so undo puts the shape back at the same depth
+        private class DeleteCommand implements Command {
+            private final int position;
+            private Shape shape; // While done
+
+            DeleteCommand(int position) {
+                this.position = position;
+            }
+
+            @Override
+            public void undo() {
+                Shape copy = shape.copy();
+                shapes.add(position, copy);
+                indexShapes(position, 1);
+                journal.insert(position, copy);
+                shapeChanged(copy.getBounds());
+                shape = null;
+            }
+
+            @Override
+            public void redo() {
+                shape = shapes.remove(position);
+                index.remove(shape);
+                journal.remove(position);
+                shapeChanged(shape.getBounds());
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + SHAPE_BYTES;
+            }
+        }
+
+        private class MoveCommand implements Command {
+            private final int position;
+            private final int dx, dy;
+
+            MoveCommand(int position, int dx, int dy) {
+                this.position = position;
+                this.dx = dx;
+                this.dy = dy;
+            }
+
+            @Override
+            public void undo() {
+                move(-dx, -dy);
+            }
+
+            @Override
+            public void redo() {
+                move(dx, dy);
+            }
+
+            private void move(int x, int y) {
+                Shape shape = shapes.edit(position);
+                Rectangle dirty = shape.getBounds();
+                shape.move(x, y);
+                index.update(shape);
+                journal.move(position, x, y);
+                dirty.add(shape.getBounds());
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES;
+            }
+        }
+
+        private class LineEndCommand implements Command {
+            private final int position;
+            private final LineEnd end;
+            private final Point from, to;
+
+            LineEndCommand(int position, LineEnd end, Point from, Point to) {
+                this.position = position;
+                this.end = end;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            public void undo() {
+                moveEnd(from);
+            }
+
+            @Override
+            public void redo() {
+                moveEnd(to);
+            }
+
+            private void moveEnd(Point p) {
+                Line line = (Line) shapes.edit(position);
+                Rectangle dirty = line.getBounds();
+                line.moveEnd(end, p.x, p.y);
+                index.update(line);
+                journal.moveEnd(position, end, p.x, p.y);
+                dirty.add(line.getBounds());
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + 2 * 24;
+            }
+        }
+
+        // Batch commands work on the positions of a selection (ascending) and repaint the union of
+        // the areas they change once, however many shapes there are
+        private class BatchMoveCommand implements Command {
+            private final int[] positions;
+            private final int dx, dy;
+
+            BatchMoveCommand(int[] positions, int dx, int dy) {
+                this.positions = positions;
+                this.dx = dx;
+                this.dy = dy;
+            }
+
+            @Override
+            public void undo() {
+                move(-dx, -dy);
+            }
+
+            @Override
+            public void redo() {
+                move(dx, dy);
+            }
+
+            private void move(int x, int y) {
+                Rectangle dirty = null;
+                for (int position : positions) {
+                    Shape shape = shapes.edit(position);
+                    dirty = union(dirty, shape);
+                    shape.move(x, y);
+                    index.update(shape);
+                    journal.move(position, x, y);
+                    dirty.add(shape.getBounds());
+                }
+                if (selection == positions) {
+                    selectionBounds.translate(x, y); // The selection goes with its shapes
+                    dirty.add(selectionBounds);
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + positions.length * 4L;
+            }
+        }
+
+        // Groups may have had children of several colors, they are restored from a copy (O(1))
+        private class BatchRecolorCommand implements Command {
+            private final int[] positions;
+            private final int[] oldColors;
+            private final Group[] oldGroups; // null for other shapes
+            private final int rgb;
+
+            BatchRecolorCommand(int[] positions, int rgb) {
+                this.positions = positions;
+                this.rgb = rgb;
+                this.oldColors = new int[positions.length];
+                this.oldGroups = new Group[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    Shape shape = shapes.get(positions[i]);
+                    oldColors[i] = shape.getRGB();
+                    if (shape instanceof Group) {
+                        oldGroups[i] = (Group) shape.copy();
+                    }
+                }
+            }
+
+            @Override
+            public void undo() {
+                Rectangle dirty = null;
+                for (int i = 0; i < positions.length; i++) {
+                    if (oldGroups[i] != null) {
+                        Group group = (Group) shapes.edit(positions[i]);
+                        group.restoreColors(oldGroups[i]);
+                        journal.replace(positions[i], group); // A RECOLOR record holds one color
+                        dirty = union(dirty, group);
+                    } else {
+                        dirty = union(dirty, recolor(positions[i], oldColors[i]));
+                    }
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public void redo() {
+                Rectangle dirty = null;
+                for (int position : positions) {
+                    dirty = union(dirty, recolor(position, rgb));
+                }
+                shapeChanged(dirty);
+            }
+
+            private Shape recolor(int position, int color) {
+                Shape shape = shapes.edit(position);
+                shape.setRGB(color);
+                journal.recolor(position, color);
+                return shape;
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + positions.length * 8L;
+            }
+        }
+
+        // Removes from the top down so the positions below stay valid, undo puts the shapes
+        // back from the bottom up at the same depths
+        private class BatchDeleteCommand implements Command {
+            private final int[] positions;
+            private final Shape[] removed; // While done
+
+            BatchDeleteCommand(int[] positions) {
+                this.positions = positions;
+                this.removed = new Shape[positions.length];
+            }
+
+            @Override
+            public void undo() {
+                Rectangle dirty = null;
+                for (int i = 0; i < positions.length; i++) {
+                    Shape copy = removed[i].copy();
+                    shapes.add(positions[i], copy);
+                    indexShapes(positions[i], 1);
+                    journal.insert(positions[i], copy);
+                    dirty = union(dirty, copy);
+                    removed[i] = null;
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public void redo() {
+                Rectangle dirty = null;
+                for (int i = positions.length - 1; i >= 0; i--) {
+                    removed[i] = shapes.remove(positions[i]);
+                    index.remove(removed[i]);
+                    journal.remove(positions[i]);
+                    dirty = union(dirty, removed[i]);
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + positions.length * (SHAPE_BYTES + 4);
+            }
+        }
+
+        // Puts the selected shapes into one group, at the depth of the topmost of them
+        private class GroupCommand implements Command {
+            private final int[] positions;
+            private final int position; // Of the group
+
+            GroupCommand(int[] positions) {
+                this.positions = positions;
+                this.position = positions[positions.length - 1] - (positions.length - 1);
+            }
+
+            @Override
+            public void undo() {
+                Shape group = shapes.remove(position);
+                index.remove(group);
+                journal.remove(position);
+                Shape[] children = ((Group) group).ungroup();
+                for (int i = 0; i < positions.length; i++) {
+                    shapes.add(positions[i], children[i]);
+                    indexShapes(positions[i], 1);
+                    journal.insert(positions[i], children[i]);
+                }
+                shapeChanged(group.getBounds());
+            }
+
+            @Override
+            public void redo() {
+                Shape[] children = new Shape[positions.length];
+                for (int i = positions.length - 1; i >= 0; i--) {
+                    children[i] = shapes.remove(positions[i]); // Not changed by the group, snapshots may share them
+                    index.remove(children[i]);
+                    journal.remove(positions[i]);
+                }
+                Group group = new Group(children, 0, 0);
+                shapes.add(position, group);
+                indexShapes(position, 1);
+                journal.insert(position, group);
+                shapeChanged(group.getBounds());
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + positions.length * 4L;
+            }
+        }
+
+        // Replaces groups with their children, at the depth of their group
+        private class UngroupCommand implements Command {
+            private final int[] positions; // Of the groups, ascending
+            private final int[] sizes;
+
+            UngroupCommand(int[] positions) {
+                this.positions = positions;
+                this.sizes = new int[positions.length];
+            }
+
+            @Override
+            public void undo() {
+                Rectangle dirty = null;
+                for (int i = 0; i < positions.length; i++) {
+                    Shape[] children = new Shape[sizes[i]];
+                    for (int j = children.length - 1; j >= 0; j--) {
+                        children[j] = shapes.remove(positions[i] + j);
+                        index.remove(children[j]);
+                        journal.remove(positions[i] + j);
+                    }
+                    Group group = new Group(children, 0, 0);
+                    shapes.add(positions[i], group);
+                    indexShapes(positions[i], 1);
+                    journal.insert(positions[i], group);
+                    dirty = union(dirty, group);
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public void redo() {
+                Rectangle dirty = null;
+                for (int i = positions.length - 1; i >= 0; i--) {
+                    Group group = (Group) shapes.remove(positions[i]);
+                    index.remove(group);
+                    journal.remove(positions[i]);
+                    Shape[] children = group.ungroup();
+                    sizes[i] = children.length;
+                    for (int j = 0; j < children.length; j++) {
+                        shapes.add(positions[i] + j, children[j]);
+                        journal.insert(positions[i] + j, children[j]);
+                    }
+                    indexShapes(positions[i], children.length);
+                    dirty = union(dirty, group);
+                }
+                shapeChanged(dirty);
+            }
+
+            @Override
+            public long size() {
+                return COMMAND_BYTES + positions.length * 8L;
+            }
+        }
+
+        // Bounds of the shape added to area, a new rectangle if area is null
+        private Rectangle union(Rectangle area, Shape shape) {
+            if (area == null) {
+                return shape.getBounds();
+            }
+            area.add(shape.getBounds());
+            return area;
+        }
+
+        // Clear and load: swaps whole shape lists, so recording costs O(1) and copies no shape
+        private class ReplaceCommand implements Command {
+            private final ShapeList oldShapes, newShapes;
+            private final ShapeIndex oldIndex, newIndex;
+            private final long size;
+
+            ReplaceCommand(ShapeList newShapes, ShapeIndex newIndex) {
+                this.oldShapes = shapes;
+                this.oldIndex = index;
+                this.newShapes = newShapes;
+                this.newIndex = newIndex;
+                this.size = COMMAND_BYTES + oldShapes.size() * SHAPE_BYTES; // the old canvas is kept alive
+            }
+
+            @Override
+            public void undo() {
+                install(oldShapes, oldIndex);
+            }
+
+            @Override
+            public void redo() {
+                install(newShapes, newIndex);
+            }
+
+            private void install(ShapeList list, ShapeIndex listIndex) {
+                clearSelection();
+                shapes = list;
+                index = listIndex;
+                journal.snapshot(shapes.snapshot());
+                invalidateView();
+                repaint();
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            long start = System.nanoTime();
+            paintedShapes = 0;
+            super.paintComponent(g);
+            if (updateCache()) {
+                g.drawImage(cache, 0, 0, null); // Finalized shapes
+            }
+            if (uncachedShape != null) {
+                Graphics2D g2 = (Graphics2D) g.create();
+                g2.transform(viewTransform());
+                uncachedShape.draw(g2);
+                g2.dispose();
+                paintedShapes++;
+            }
+            if (selectionBounds != null) {
+                Graphics2D g2 = (Graphics2D) g.create();
+                g2.setColor(Color.BLUE);
+                g2.setStroke(selectionStroke);
+                Rectangle outline = toScreen(selectionBounds);
+                g2.drawRect(outline.x, outline.y, outline.width - 1, outline.height - 1);
+                g2.dispose();
+            }
+            long time = System.nanoTime() - start;
+            frameTimer.record(time);
+            Metrics.PAINT_TIME.record(time);
+            Metrics.PAINT_SHAPES.record(paintedShapes);
+            if (overlayTimer.isRunning()) {
+                paintOverlay(g);
+            }
+        }
+
+        void toggleOverlay() {
+            if (overlayTimer.isRunning()) {
+                overlayTimer.stop();
+            } else {
+                overlayTimer.start();
+            }
+            repaint(overlayArea);
+        }
+
+        private void paintOverlay(Graphics g) {
+            g.setColor(new Color(0, 0, 0, 160));
+            g.fillRect(overlayArea.x, overlayArea.y, overlayArea.width, overlayArea.height);
+            g.setColor(Color.WHITE);
+            g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            int y = overlayArea.y + 16;
+            for (String line : Metrics.overlayLines()) {
+                g.drawString(line, overlayArea.x + 6, y);
+                y += 16;
+            }
+        }
+
+        // CACHE
+
+        // Mark an area of the canvas to be redrawn in the cache on the next paint
+        void invalidateCache(Rectangle area) {
+            Rectangle screenArea = toScreen(area);
+            if (cacheDirty.isEmpty()) {
+                cacheDirty.setBounds(screenArea);
+            } else {
+                cacheDirty.add(screenArea);
+            }
+        }
+
+        // Everything in view is out of date, e.g. after zooming or replacing the canvas
+        private void invalidateView() {
+            cacheDirty.setBounds(0, 0, getWidth(), getHeight());
+        }
+
+        // New shapes are on top of all others, so they can be drawn straight onto the cache
+        private void drawToCache(Shape shape) {
+            drawToCache(java.util.Collections.singletonList(shape));
+        }
+
+        private void drawToCache(List<Shape> newShapes) {
+            if (cache != null) {
+                Graphics2D g = cache.createGraphics();
+                g.transform(viewTransform());
+                CanvasRenderer.drawView(g, cache, new Rectangle(cache.getWidth(), cache.getHeight()), newShapes, null);
+                g.dispose();
+            }
+        }
+
+        // Redraw the out of date area of the cache, returns false if there is nothing to show
+        private boolean updateCache() {
+            int width = getWidth();
+            int height = getHeight();
+            if (width <= 0 || height <= 0) {
+                return false;
+            }
+            if (cache == null || cache.getWidth() != width || cache.getHeight() != height) {
+                cache = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                cacheDirty.setBounds(0, 0, width, height);
+            }
+            if (!cacheDirty.isEmpty()) {
+                redrawCache(cacheDirty);
+                cacheDirty.setBounds(0, 0, 0, 0);
+            }
+            return true;
+        }
+
+        // Redraw an area of the cache (in screen coordinates) from the shapes. A part of the view
+        // only draws the shapes the index finds there, the whole view goes through the list.
+        private void redrawCache(Rectangle screenArea) {
+            Graphics2D g = cache.createGraphics();
+            g.setClip(screenArea);
+            g.setColor(getBackground());
+            g.fillRect(screenArea.x, screenArea.y, screenArea.width, screenArea.height);
+            g.transform(viewTransform());
+            List<Shape> drawn = screenArea.contains(0, 0, cache.getWidth(), cache.getHeight()) ? shapes
+                    : index.intersecting(CanvasRenderer.toCanvas(screenArea, viewTransform()));
+            paintedShapes += CanvasRenderer.drawView(g, cache, screenArea, drawn, uncachedShape);
+            g.dispose();
+        }
+
+        // VIEW
+
+        private AffineTransform viewTransform() {
+            AffineTransform view = AffineTransform.getScaleInstance(zoom, zoom);
+            view.translate(-viewX, -viewY);
+            return view;
+        }
+
+        private Point toCanvas(Point screen) {
+            return new Point((int) Math.floor(screen.x / zoom + viewX), (int) Math.floor(screen.y / zoom + viewY));
+        }
+
+        // Smallest screen area that holds the canvas area
+        private Rectangle toScreen(Rectangle area) {
+            int x = (int) Math.floor((area.x - viewX) * zoom);
+            int y = (int) Math.floor((area.y - viewY) * zoom);
+            return new Rectangle(x, y,
+                    (int) Math.ceil((area.x + area.width - viewX) * zoom) - x + 1,
+                    (int) Math.ceil((area.y + area.height - viewY) * zoom) - y + 1);
+        }
+
+        // Canvas area the panel shows
+        private Rectangle visibleArea() {
+            Point topLeft = toCanvas(new Point(0, 0));
+            Point bottomRight = toCanvas(new Point(getWidth(), getHeight()));
+            return new Rectangle(topLeft.x, topLeft.y, bottomRight.x - topLeft.x + 1, bottomRight.y - topLeft.y + 1);
+        }
+
+        private void repaintCanvas(Rectangle area) {
+            repaint(toScreen(area));
+        }
+
+        // Zoom by factor, keeping the canvas point under the mouse where it is
+        void zoomAt(Point screen, double factor) {
+            if (selectedShape != null) {
+                return; // Not while a shape is dragged
+            }
+            double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+            viewX += screen.x / zoom - screen.x / newZoom;
+            viewY += screen.y / zoom - screen.y / newZoom;
+            zoom = newZoom;
+            invalidateView();
+            repaint();
+            controlPanel.showZoom(zoom);
+        }
+
+        public void resetView() {
+            if (selectedShape == null) {
+                zoom = 1;
+                viewX = 0;
+                viewY = 0;
+                invalidateView();
+                repaint();
+                controlPanel.showZoom(zoom);
+            }
+        }
+
+        // Move the view by whole pixels: the cache is scrolled and only the uncovered strips are drawn
+        private void pan(int dx, int dy) {
+            viewX -= dx / zoom;
+            viewY -= dy / zoom;
+            int width = getWidth();
+            int height = getHeight();
+            if (cache == null || !cacheDirty.isEmpty() || Math.abs(dx) >= width || Math.abs(dy) >= height) {
+                invalidateView();
+            } else {
+                Graphics g = cache.getGraphics();
+                g.copyArea(0, 0, width, height, dx, dy);
+                g.dispose();
+                if (dx != 0) {
+                    redrawCache(new Rectangle(dx > 0 ? 0 : width + dx, 0, Math.abs(dx), height));
+                }
+                if (dy != 0) {
+                    redrawCache(new Rectangle(0, dy > 0 ? 0 : height + dy, width, Math.abs(dy)));
+                }
+            }
+            repaint();
+        }
+
+        // Returns false if the user cancelled, when the old canvas is too large to keep for undo, or
+        // if a load or save is running: a load would go on adding its shapes to the new canvas
+        public boolean clear() {
+            if (fileWorkerRunning()) {
+                return false;
+            }
+            ReplaceCommand command = new ReplaceCommand(new ShapeList(this::shapeCopied), new ShapeIndex());
+            if (!history.fits(command.size())) {
+                int choice = JOptionPane.showConfirmDialog(this,
+                        "The canvas is too large for the undo history (about " + (command.size() >> 20) + " MB, the limit is "
+                                + (history.maxBytes() >> 20) + " MB).\nIt can only be brought back until the next change. Continue?",
+                        "Large canvas", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (choice != JOptionPane.OK_OPTION) {
+                    return false;
+                }
+            }
+            perform(command);
+            return true;
+        }
+
+        public void saveShapes() {
+            JFileChooser fileChooser = new JFileChooser();
+            if (fileWorkerRunning()) {
+                return;
+            }
+            fileChooser.setDialogTitle("Save Shapes");
+            javax.swing.filechooser.FileNameExtensionFilter binaryFilter = new javax.swing.filechooser.FileNameExtensionFilter("vgc", "vgc");
+            javax.swing.filechooser.FileNameExtensionFilter textFilter = new javax.swing.filechooser.FileNameExtensionFilter("txt", "txt");
+            javax.swing.filechooser.FileNameExtensionFilter tiledFilter = new javax.swing.filechooser.FileNameExtensionFilter("vgt (tiled, compressed)", "vgt");
+            fileChooser.addChoosableFileFilter(binaryFilter);
+            fileChooser.addChoosableFileFilter(textFilter);
+            fileChooser.addChoosableFileFilter(tiledFilter);
+            fileChooser.setFileFilter(binaryFilter);
+            int userSelection = fileChooser.showSaveDialog(this);
+
+            if (userSelection == JFileChooser.APPROVE_OPTION) {
+                File fileToSave = fileChooser.getSelectedFile();
+                String name = fileToSave.getName().toLowerCase();
+                // Ensure the file has a .vgc, .txt or .vgt extension, following the selected filter
+                String extension = name.endsWith(".txt") ? "txt" : name.endsWith(".vgc") ? "vgc" : name.endsWith(".vgt") ? "vgt"
+                        : fileChooser.getFileFilter() == textFilter ? "txt" : fileChooser.getFileFilter() == tiledFilter ? "vgt" : "vgc";
+                if (!name.endsWith("." + extension)) {
+                    fileToSave = new File(fileToSave.getAbsolutePath() + "." + extension);
+                }
+
+                startFileWorker(new SaveWorker(fileToSave, extension));
+            }
+        }
+    
+        public void loadShapes() {
+            JFileChooser fileChooser = new JFileChooser();
+            if (fileWorkerRunning()) {
+                return;
+            }
+            fileChooser.setDialogTitle("Load Canvas");
+            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("vgc, txt, vgt", "vgc", "txt", "vgt"));
+            fileChooser.setAccessory(new ThumbnailAccessory(fileChooser, thumbnails));
+            int userSelection = fileChooser.showOpenDialog(this);
+
+            if (userSelection == JFileChooser.APPROVE_OPTION) {
+                File fileToLoad = fileChooser.getSelectedFile();
+                boolean tiled;
+                try {
+                    tiled = TiledCanvas.isTiled(fileToLoad);
+                } catch (IOException e) {
+                    JOptionPane.showMessageDialog(this, "Error loading file: " + e.getMessage());
+                    return;
+                }
+                if (!clear()) { // Clear existing shapes before loading new ones, undo brings them back
+                    return;
+                }
+                journal.suspend(); // Autosaved as a whole when the load is done
+                startFileWorker(tiled ? new TiledLoadWorker(fileToLoad) : new LoadWorker(fileToLoad));
+            }
+        }
+
+        // BACKGROUND FILE OPERATIONS
+
+        private boolean loading() {
+            return (fileWorker instanceof LoadWorker || fileWorker instanceof TiledLoadWorker) && !fileWorker.isDone();
+        }
+
+        // A tiled load inserts shapes below others, so positions change until it is done
+        private boolean tiledLoading() {
+            return fileWorker instanceof TiledLoadWorker && !fileWorker.isDone();
+        }
+
+        private boolean fileWorkerRunning() {
+            if (fileWorker != null && !fileWorker.isDone()) {
+                JOptionPane.showMessageDialog(this, "Please wait until the current load or save is finished.");
+                return true;
+            }
+            return false;
+        }
+
+        private void startFileWorker(FileWorker<?> worker) {
+            fileWorker = worker;
+            worker.execute();
+        }
+
+        // Runs off the event dispatch thread, with a progress dialog that can cancel it
+        private abstract class FileWorker<V> extends SwingWorker<String, V> {
+            private final ProgressMonitor monitor;
+            private final Timer monitorTimer;
+            private final String errorMessage;
+
+            FileWorker(String title, String errorMessage) {
+                this.errorMessage = errorMessage;
+                monitor = new ProgressMonitor(DrawPanel.this, title, null, 0, 100);
+                monitorTimer = new Timer(100, e -> {
+                    monitor.setProgress(getProgress());
+                    if (monitor.isCanceled()) {
+                        cancel(false);
+                    }
+                });
+                monitorTimer.start();
+            }
+
+            protected abstract String cancelledMessage();
+
+            @Override
+            protected void done() {
+                monitorTimer.stop();
+                monitor.close();
+                String message;
+                try {
+                    message = get();
+                } catch (CancellationException e) {
+                    message = cancelledMessage();
+                } catch (ExecutionException e) {
+                    message = errorMessage + e.getCause().getMessage();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                JOptionPane.showMessageDialog(DrawPanel.this, message);
+            }
+        }
+
+        // Parses the file in the background and adds the shapes to the canvas in batches
+        private class LoadWorker extends FileWorker<List<Shape>> {
+            private final File file;
+
+            LoadWorker(File file) {
+                super("Loading " + file.getName(), "Error loading file: ");
+                this.file = file;
+            }
+
+            @Override
+            protected String doInBackground() throws IOException {
+                long start = System.nanoTime();
+                try (CanvasReader reader = CanvasReader.open(file)) {
+                    List<Shape> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+                    Shape shape;
+                    while (!isCancelled() && (shape = reader.next()) != null) {
+                        batch.add(shape);
+                        if (batch.size() == LOAD_BATCH_SIZE) {
+                            publish(batch);
+                            batch = new ArrayList<>(LOAD_BATCH_SIZE);
+                            setProgress((int) (reader.getProgress() * 100));
+                        }
+                    }
+                    publish(batch);
+                    if (!isCancelled()) {
+                        Metrics.LOAD_TIME.record(System.nanoTime() - start);
+                        Metrics.LOAD_BYTES.record(file.length());
+                    }
+                    if (reader.getErrorCount() > 0) {
+                        return parseErrorMessage(reader);
+                    }
+                }
+                return "Canvas loaded successfully!";
+            }
+
+            @Override
+            protected void process(List<List<Shape>> batches) {
+                if (isCancelled()) {
+                    return;
+                }
+                for (List<Shape> batch : batches) {
+                    for (Shape shape : batch) {
+                        addShape(shape);
+                    }
+                    drawToCache(batch);
+                }
+                repaint();
+            }
+
+            @Override
+            protected void done() {
+                journal.snapshot(shapes.snapshot());
+                super.done();
+            }
+
+            @Override
+            protected String cancelledMessage() {
+                return "Loading cancelled, " + shapes.size() + " shapes loaded.";
+            }
+        }
+
+        // Loads a tiled canvas (see TiledCanvas) a tile at a time, the tiles in view first. The view
+        // is handed to the worker after every tile, so the tiles a pan brings into view are read
+        // next, and the others follow nearest first. Tiles come out of canvas order, so each shape
+        // is inserted at its place among the shapes loaded so far.
+        private class TiledLoadWorker extends FileWorker<TiledCanvas.TileShapes> {
+            private final File file;
+            private volatile Rectangle view; // Canvas area in view, set on the event dispatch thread
+            private int[] loaded; // Fenwick tree over the orders of the loaded shapes
+            private final ShapeList target = shapes; // The positions from loaded are only valid in this list
+
+            TiledLoadWorker(File file) {
+                super("Loading " + file.getName(), "Error loading file: ");
+                this.file = file;
+                view = visibleArea();
+            }
+
+            @Override
+            protected String doInBackground() throws IOException {
+                long start = System.nanoTime();
+                try (TiledCanvasReader reader = new TiledCanvasReader(file)) {
+                    loaded = new int[reader.size() + 1]; // Seen by process() through publish()
+                    List<TiledCanvas.Tile> remaining = new ArrayList<>(reader.getTiles());
+                    int tiles = remaining.size();
+                    while (!isCancelled() && !remaining.isEmpty()) {
+                        publish(reader.read(remaining.remove(nextTile(remaining, view))));
+                        setProgress((tiles - remaining.size()) * 100 / tiles);
+                    }
+                    if (!isCancelled()) {
+                        Metrics.LOAD_TIME.record(System.nanoTime() - start);
+                        Metrics.LOAD_BYTES.record(file.length());
+                    }
+                }
+                return "Canvas loaded successfully!";
+            }
+
+            // The first tile in view, or the one nearest to the view if none is
+            private int nextTile(List<TiledCanvas.Tile> tiles, Rectangle view) {
+                int nearest = 0;
+                double nearestDistance = Double.MAX_VALUE;
+                for (int i = 0; i < tiles.size(); i++) {
+                    Rectangle bounds = tiles.get(i).bounds;
+                    if (bounds.intersects(view)) {
+                        return i;
+                    }
+                    double distance = Point.distanceSq(bounds.getCenterX(), bounds.getCenterY(), view.getCenterX(), view.getCenterY());
+                    if (distance < nearestDistance) {
+                        nearest = i;
+                        nearestDistance = distance;
+                    }
+                }
+                return nearest;
+            }
+
+            @Override
+            protected void process(List<TiledCanvas.TileShapes> tiles) {
+                if (isCancelled() || shapes != target) {
+                    return;
+                }
+                for (TiledCanvas.TileShapes tile : tiles) {
+                    for (int i = 0; i < tile.shapes.length; i++) {
+                        int position = loadedBefore(tile.orders[i]);
+                        shapes.add(position, tile.shapes[i]);
+                        index.add(tile.shapes[i], tile.orders[i] * ShapeIndex.ORDER_STEP);
+                        journal.insert(position, tile.shapes[i]);
+                        for (int j = tile.orders[i] + 1; j < loaded.length; j += j & -j) {
+                            loaded[j]++;
+                        }
+                    }
+                    shapeChanged(tile.tile.bounds);
+                }
+                view = visibleArea();
+            }
+
+            // Number of loaded shapes that come before the order in the canvas
+            private int loadedBefore(int order) {
+                int count = 0;
+                for (int j = order; j > 0; j -= j & -j) {
+                    count += loaded[j];
+                }
+                return count;
+            }
+
+            @Override
+            protected void done() {
+                journal.snapshot(shapes.snapshot());
+                super.done();
+            }
+
+            @Override
+            protected String cancelledMessage() {
+                return "Loading cancelled, " + shapes.size() + " shapes loaded.";
+            }
+        }
+
+        // Writes a snapshot of the shapes, so editing can go on during the save
+        private class SaveWorker extends FileWorker<Void> {
+            private final File file;
+            private final String extension; // vgc, txt or vgt
+            private final List<Shape> snapshot;
+
+            SaveWorker(File file, String extension) {
+                super("Saving " + file.getName(), "Error saving file: ");
+                this.file = file;
+                this.extension = extension;
+                snapshot = shapes.snapshot();
+            }
+
+            @Override
+            protected String doInBackground() throws IOException {
+                long start = System.nanoTime();
+                // Write next to the target and replace it at the end, so a cancelled or failed save keeps the old file
+                File partFile = new File(file.getPath() + ".part");
+                boolean saved = false;
+                try {
+                    boolean text = extension.equals("txt");
+                    // Text files list the colors once if the canvas has few, binary records keep their fixed width
+                    Palette palette = text ? Palette.of(snapshot) : null;
+                    try (CanvasWriter writer = extension.equals("vgt") ? new TiledCanvasWriter(partFile)
+                            : CanvasWriter.open(partFile, text, palette)) {
+                        for (int i = 0; i < snapshot.size() && !isCancelled(); i++) {
+                            writer.write(snapshot.get(i));
+                            if (i % LOAD_BATCH_SIZE == 0) {
+                                setProgress((int) ((long) i * 100 / snapshot.size()));
+                            }
+                        }
+                    }
+                    if (!isCancelled()) {
+                        Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        saved = true;
+                        Metrics.SAVE_TIME.record(System.nanoTime() - start);
+                        Metrics.SAVE_BYTES.record(file.length());
+                    }
+                } finally {
+                    if (!saved) {
+                        partFile.delete();
+                    }
+                }
+                return "Shapes saved successfully!";
+            }
+
+            @Override
+            protected String cancelledMessage() {
+                return "Saving cancelled, " + file.getName() + " was not changed.";
+            }
+        }
+
+        // Renders a snapshot of the shapes to a PNG of any size, tile by tile
+        private class ExportWorker extends FileWorker<Void> {
+            private final File file;
+            private final double scale;
+            private final List<Shape> snapshot;
+            private final Rectangle area;
+
+            ExportWorker(File file, double scale) {
+                super("Exporting " + file.getName(), "Error exporting image: ");
+                this.file = file;
+                this.scale = scale;
+                snapshot = shapes.snapshot();
+                area = CanvasRenderer.extent(snapshot);
+                area.add(visibleArea()); // at least the part of the canvas on screen
+            }
+
+            @Override
+            protected String doInBackground() throws IOException {
+                int width = (int) Math.ceil(area.width * scale);
+                int height = (int) Math.ceil(area.height * scale);
+                TiledExporter exporter = new TiledExporter(snapshot, area.getLocation(), width, height, scale, getBackground(),
+                        EXPORT_TILE_SIZE, Runtime.getRuntime().availableProcessors());
+                long start = System.nanoTime();
+                boolean exported = false;
+                try (OutputStream out = new FileOutputStream(file)) {
+                    exported = exporter.write(out, this::setProgress, this::isCancelled);
+                } finally {
+                    if (!exported) {
+                        file.delete(); // incomplete image
+                    }
+                }
+                if (exported) {
+                    Metrics.EXPORT_TIME.record(System.nanoTime() - start);
+                    Metrics.EXPORT_BYTES.record(file.length());
+                }
+                return "Image exported successfully! (" + width + "x" + height + ")";
+            }
+
+            @Override
+            protected String cancelledMessage() {
+                return "Export cancelled.";
+            }
+        }
+
+        // Streams a snapshot of the shapes to an SVG file, a shape at a time
+        private class SvgExportWorker extends FileWorker<Void> {
+            private final File file;
+            private final List<Shape> snapshot;
+            private final Rectangle visible;
+            private final int background;
+
+            SvgExportWorker(File file) {
+                super("Exporting " + file.getName(), "Error exporting image: ");
+                this.file = file;
+                snapshot = shapes.snapshot();
+                visible = visibleArea();
+                background = getBackground().getRGB() & 0xFFFFFF;
+            }
+
+            @Override
+            protected String doInBackground() throws IOException {
+                long start = System.nanoTime();
+                Rectangle area = new Rectangle(visible); // at least what is visible on screen
+                for (Shape shape : snapshot) {
+                    area.add(shape.getBounds());
+                }
+                boolean exported = false;
+                try (SvgWriter writer = new SvgWriter(new FileOutputStream(file), area, area.width, area.height, background)) {
+                    int count = 0;
+                    for (Shape shape : snapshot) {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        writer.write(shape);
+                        if (++count % LOAD_BATCH_SIZE == 0) {
+                            setProgress((int) ((long) count * 100 / snapshot.size()));
+                        }
+                    }
+                    exported = true;
+                } finally {
+                    if (!exported) {
+                        file.delete(); // incomplete image
+                    }
+                }
+                Metrics.EXPORT_TIME.record(System.nanoTime() - start);
+                Metrics.EXPORT_BYTES.record(file.length());
+                return "Image exported successfully! (" + snapshot.size() + " shapes)";
+            }
+
+            @Override
+            protected String cancelledMessage() {
+                return "Export cancelled.";
+            }
+        }
+
+        // AUTOSAVE
+
+        // Offer the canvas of a session that did not close normally, then journal every change
+        void startAutosave() {
+            try {
+                if (!journal.lock()) {
+                    return; // Another editor is autosaving to the same folder
+                }
+                List<Shape> recovered = journal.recover();
+                if (recovered != null && !recovered.isEmpty() && JOptionPane.showConfirmDialog(this,
+                        "The last session did not close normally. Recover its " + recovered.size() + " shapes?",
+                        "Autosave", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                    for (Shape shape : recovered) {
+                        addShape(shape); // Not journaled yet, the journal starts from the recovered canvas
+                    }
+                    invalidateView();
+                    repaint();
+                }
+                journal.start(shapes.snapshot());
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(this, "Autosave is off: " + e.getMessage());
+            }
+        }
+
+        // The session ends normally, nothing to recover next time
+        void stopAutosave() {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                // Closing anyway, the autosave is offered again next time
+            }
+        }
+
+        private void autosaveFailed(IOException e) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, "Autosave stopped: " + e.getMessage()));
+        }
+
+        // Tell the user which lines of a text canvas were skipped
+        private String parseErrorMessage(CanvasReader reader) {
+            StringBuilder message = new StringBuilder("Canvas loaded, " + reader.getErrorCount() + " invalid line(s) skipped:");
+            for (String error : reader.getErrors().subList(0, Math.min(10, reader.getErrors().size()))) {
+                message.append("\n").append(error);
+            }
+            if (reader.getErrorCount() > 10) {
+                message.append("\n...");
+            }
+            return message.toString();
+        }
+
+        public void exportAsImage() {
+            // Create a BufferedImage with the same dimensions as the DrawPanel
+            BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+        
+            // Paint the DrawPanel's contents onto the BufferedImage
+            this.paint(g2d);
+            g2d.dispose();
+            
+            // Prompt the user to select a file location
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Export as Image");
+            javax.swing.filechooser.FileNameExtensionFilter jpgFilter = new javax.swing.filechooser.FileNameExtensionFilter("jpg", "jpg");
+            javax.swing.filechooser.FileNameExtensionFilter tiledFilter = new javax.swing.filechooser.FileNameExtensionFilter("png, any size (tiled)", "png");
+            javax.swing.filechooser.FileNameExtensionFilter svgFilter = new javax.swing.filechooser.FileNameExtensionFilter("svg (vector)", "svg");
+            fileChooser.addChoosableFileFilter(jpgFilter);
+            fileChooser.addChoosableFileFilter(tiledFilter);
+            fileChooser.addChoosableFileFilter(svgFilter);
+            fileChooser.setFileFilter(jpgFilter);
+            int userSelection = fileChooser.showSaveDialog(this);
+        
+            if (userSelection == JFileChooser.APPROVE_OPTION) {
+                File fileToSave = fileChooser.getSelectedFile();
+                if (fileChooser.getFileFilter() == tiledFilter || fileToSave.getName().toLowerCase().endsWith(".png")) {
+                    exportTiled(fileToSave);
+                    return;
+                }
+                if (fileChooser.getFileFilter() == svgFilter || fileToSave.getName().toLowerCase().endsWith(".svg")) {
+                    exportSvg(fileToSave);
+                    return;
+                }
+                // Ensure the file has a .jpg extension
+                if (!fileToSave.getName().toLowerCase().endsWith(".jpg")) {
+                    fileToSave = new File(fileToSave.getAbsolutePath() + ".jpg");
+                }
+        
+                try {
+                    // Write the BufferedImage to the file
+                    long start = System.nanoTime();
+                    ImageIO.write(image, "jpg", fileToSave);
+                    Metrics.EXPORT_TIME.record(System.nanoTime() - start);
+                    Metrics.EXPORT_BYTES.record(fileToSave.length());
+                    JOptionPane.showMessageDialog(this, "Image exported successfully!");
+                } catch (IOException e) {
+                    JOptionPane.showMessageDialog(this, "Error exporting image: " + e.getMessage());
+                }
+            }
+        }
+
+        // Export the whole canvas at a chosen scale, e.g. for posters far larger than the screen
+        private void exportTiled(File fileToSave) {
+            if (fileWorkerRunning()) {
+                return;
+            }
+            String input = JOptionPane.showInputDialog(this, "Scale of the exported image (1 = as on screen):", "1");
+            if (input == null) {
+                return;
+            }
+            double scale;
+            try {
+                scale = Double.parseDouble(input);
+                if (!(scale > 0 && scale <= 100)) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Invalid scale. Please enter a number between 0 and 100.");
+                return;
+            }
+            // Ensure the file has a .png extension
+            if (!fileToSave.getName().toLowerCase().endsWith(".png")) {
+                fileToSave = new File(fileToSave.getAbsolutePath() + ".png");
+            }
+            startFileWorker(new ExportWorker(fileToSave, scale));
+        }
+
+        // Export the whole canvas as shapes, sharp at any size
+        private void exportSvg(File fileToSave) {
+            if (fileWorkerRunning()) {
+                return;
+            }
+            // Ensure the file has a .svg extension
+            if (!fileToSave.getName().toLowerCase().endsWith(".svg")) {
+                fileToSave = new File(fileToSave.getAbsolutePath() + ".svg");
+            }
+            startFileWorker(new SvgExportWorker(fileToSave));
+        }
+    }
+
+    private class ControlPanel extends JPanel {
+        private JTextField rField, gField, bField;
+        private JPanel colorPreview;
+        private final JLabel frameLabel = new JLabel();
+        private final JLabel zoomLabel = new JLabel("Zoom: 100%");
+
+        public ControlPanel() {
+            //Shape selection buttons
+            JRadioButton lineButton, rectButton, circleButton;
+            lineButton = new JRadioButton("Line", true);
+            rectButton = new JRadioButton("Rectangle");
+            circleButton = new JRadioButton("Circle");
+            ButtonGroup shapeGroup = new ButtonGroup();
+            shapeGroup.add(lineButton);
+            shapeGroup.add(rectButton);
+            shapeGroup.add(circleButton);
+
+            lineButton.addActionListener(e -> currentShape = ShapeType.LINE);
+            rectButton.addActionListener(e -> currentShape = ShapeType.RECTANGLE);
+            circleButton.addActionListener(e -> currentShape = ShapeType.CIRCLE);
+            
+            this.add(lineButton);
+            this.add(rectButton);
+            this.add(circleButton);
+
+            // Color selection fields
+            rField = new JTextField("0", 3);
+            gField = new JTextField("0", 3);
+            bField = new JTextField("0", 3);
+            
+
+            this.add(new JLabel("R:"));
+            this.add(rField);
+            this.add(new JLabel("G:"));
+            this.add(gField);
+            this.add(new JLabel("B:"));
+            this.add(bField);
+
+            // JButton colorButton = new JButton("Set Color");
+            // colorButton.addActionListener(e -> setColor());
+            // this.add(colorButton);
+
+            rField.addActionListener(e -> setColor());
+            gField.addActionListener(e -> setColor());
+            bField.addActionListener(e -> setColor());
+
+            // Color preview
+            colorPreview = new JPanel();
+            colorPreview.setPreferredSize(new Dimension(50, 20));
+            colorPreview.setBackground(currentColor);
+            colorPreview.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+            this.add(colorPreview);
+
+            // Paint and drag timings of the canvas
+            this.add(Box.createHorizontalStrut(20));
+            this.add(frameLabel);
+            this.add(Box.createHorizontalStrut(20));
+            this.add(zoomLabel);
+        }
+
+        public void showFrameTime(FrameTimer timer) {
+            frameLabel.setText(timer.toString());
+        }
+
+        public void showZoom(double zoom) {
+            zoomLabel.setText(String.format("Zoom: %.0f%%", zoom * 100));
+        }
+
+        public void setColor() {
+            try {
+                int r = Integer.parseInt(controlPanel.rField.getText());
+                int g = Integer.parseInt(controlPanel.gField.getText());
+                int b = Integer.parseInt(controlPanel.bField.getText());
+    
+                // // Clamp values to 0-255
+                // r = Math.max(0, Math.min(255, r));
+                // g = Math.max(0, Math.min(255, g));
+                // b = Math.max(0, Math.min(255, b));
+                
+                currentColor = new Color(r, g, b);
+                colorPreview.setBackground(currentColor); // Update preview
+                drawPanel.recolorSelection(currentColor); // Selected shapes take the new color
+            } catch (Exception e) { 
+                // Values are not integers or out of range
+                JOptionPane.showMessageDialog(this, "Invalid color values. Please enter integers between 0 and 255.");
+            }
+        }
+    }
+
+    private class OperationPanel extends JPanel {
+        private final JButton undoButton, redoButton, exportButton, saveButton, loadButton, clearButton;
+        private final JRadioButton drawButton, editButton;
+
+        public OperationPanel() {
+            this.add(new JLabel("Mode:"));
+
+            drawButton = new JRadioButton("Draw", true);
+            editButton = new JRadioButton("Edit");
+            ButtonGroup operationGroup = new ButtonGroup();
+            operationGroup.add(drawButton);
+            operationGroup.add(editButton);
+
+            drawButton.addActionListener(e -> {
+                currentOperation = OperationType.DRAW;
+                drawPanel.clearSelection();
+            });
+            editButton.addActionListener(e -> currentOperation = OperationType.EDIT);
+
+            this.add(drawButton);
+            this.add(editButton);
+
+            // Spacer
+            this.add(Box.createHorizontalStrut(200));
+
+            // Undo and redo buttons
+            undoButton = new JButton("Undo");
+            undoButton.addActionListener(e -> drawPanel.undo());
+            redoButton = new JButton("Redo");
+            redoButton.addActionListener(e -> drawPanel.redo());
+
+            this.add(undoButton);
+            this.add(redoButton);
+
+            // Save, load, and clear buttons
+            exportButton = new JButton("Export");
+            exportButton.addActionListener(e -> drawPanel.exportAsImage());
+            saveButton = new JButton("Save");
+            saveButton.addActionListener(e -> drawPanel.saveShapes());
+            loadButton = new JButton("Load");
+            loadButton.addActionListener(e -> drawPanel.loadShapes());
+            clearButton = new JButton("Clear");
+            clearButton.addActionListener(e -> drawPanel.clear());
+
+            this.add(exportButton);
+            this.add(saveButton);
+            this.add(loadButton);
+            this.add(clearButton);
+        }
+    }
+}
\ No newline at end of file
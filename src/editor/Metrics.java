@@ -0,0 +1,172 @@
+package editor;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+
+// Timings and sizes of the editor's work, kept while it runs and published over JMX
+// (jconsole, VisualVM, ...). Recording a value is a few atomic adds into fixed arrays,
+// so it does not allocate and can stay on in every session.
+class Metrics {
+    static final Histogram PAINT_TIME = register("paintTime", "ns");
+    static final Histogram PAINT_SHAPES = register("paintShapes", "shapes"); // drawn into the cache per paint
+    static final Histogram SELECT_TIME = register("selectTime", "ns");
+    static final Histogram SELECT_CANDIDATES = register("selectCandidates", "shapes"); // tested per click
+    static final Histogram LOAD_TIME = register("loadTime", "ns");
+    static final Histogram LOAD_BYTES = register("loadBytes", "bytes");
+    static final Histogram SAVE_TIME = register("saveTime", "ns");
+    static final Histogram SAVE_BYTES = register("saveBytes", "bytes");
+    static final Histogram EXPORT_TIME = register("exportTime", "ns");
+    static final Histogram EXPORT_BYTES = register("exportBytes", "bytes");
+    static final Histogram THUMBNAIL_TIME = register("thumbnailTime", "ns"); // per preview made, from disk or rendered
+
+    private static Histogram register(String name, String unit) {
+        Histogram histogram = new Histogram(unit);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(histogram, HistogramMBean.class),
+                    new ObjectName("editor:type=Metrics,name=" + name));
+        } catch (JMException | SecurityException e) {
+            // Still recorded, just not visible over JMX (e.g. a second editor in the same VM)
+        }
+        return histogram;
+    }
+
+    // Summary for the debug overlay of the canvas
+    static String[] overlayLines() {
+        return new String[] {
+                String.format("paint  %6.2f ms  p99 %6.2f ms  %.0f shapes", millis(PAINT_TIME.getMean()),
+                        millis(PAINT_TIME.getP99()), PAINT_SHAPES.getMean()),
+                String.format("select %6.3f ms  p99 %6.3f ms  %.0f candidates", millis(SELECT_TIME.getMean()),
+                        millis(SELECT_TIME.getP99()), SELECT_CANDIDATES.getMean()),
+                String.format("load %d (%.0f ms, %.1f MB)  save %d (%.0f ms)  export %d (%.0f ms)",
+                        LOAD_TIME.getCount(), millis(LOAD_TIME.getMean()), LOAD_BYTES.getMean() / (1 << 20),
+                        SAVE_TIME.getCount(), millis(SAVE_TIME.getMean()),
+                        EXPORT_TIME.getCount(), millis(EXPORT_TIME.getMean())),
+        };
+    }
+
+    private static double millis(double nanos) {
+        return nanos / 1e6;
+    }
+}
+
+// Count, total, maximum and log-linear buckets of non-negative values. Each power of two
+// is split into SUB_BUCKETS buckets, so percentiles are within 1/8 of the exact value
+// over any range, with a fixed array of a few hundred counters.
+class Histogram implements HistogramMBean {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final String unit;
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS) << SUB_BITS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram(String unit) {
+        this.unit = unit;
+    }
+
+    void record(long value) {
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry, another thread raised the maximum
+        }
+    }
+
+    // Values below SUB_BUCKETS have a bucket each, above that the bucket is the power of two
+    // and the SUB_BITS bits below the highest one
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) | sub;
+    }
+
+    // Smallest value in the bucket
+    private static long lowerBound(int bucket) {
+        int exponent = bucket >>> SUB_BITS;
+        if (exponent == 0) {
+            return bucket;
+        }
+        return (long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1))) << (exponent - 1);
+    }
+
+    // Largest value of the bucket that holds the given fraction of the values
+    long percentile(double fraction) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i + 1 < buckets.length() ? Math.min(lowerBound(i + 1) - 1, max.get()) : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String getUnit() {
+        return unit;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public long getTotal() {
+        return total.get();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getP90() {
+        return percentile(0.9);
+    }
+
+    @Override
+    public long getP99() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+}
@@ -0,0 +1,86 @@
+package editor;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+// Colors of a canvas in the order they first appear. Canvases use few colors, so the text
+// format can list them once in "COLOR index R G B" lines before the shapes, and end each shape
+// line with "@index" instead of its three RGB values (see TextCanvasWriter and TextCanvasReader).
+class Palette {
+    static final int MAX_SIZE = 256; // Canvases with more colors are written with RGB on every line
+
+    private final int[] colors = new int[MAX_SIZE];
+    private int size = 0;
+    // Open addressing from packed RGB + 1 (0 is a free slot) to index, no boxing on lookups
+    private final int[] keys = new int[MAX_SIZE * 2];
+    private final int[] indexes = new int[MAX_SIZE * 2];
+
+    // Palette of the shapes and the children of their groups, null if they have more than MAX_SIZE colors
+    static Palette of(List<Shape> shapes) {
+        Palette palette = new Palette();
+        for (Shape shape : shapes) {
+            if (!palette.addAll(shape)) {
+                return null;
+            }
+        }
+        return palette;
+    }
+
+    private boolean addAll(Shape shape) {
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            for (int i = 0; i < group.size(); i++) {
+                if (!addAll(group.getChild(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return add(shape.getRGB());
+    }
+
+    // False if the palette is full and does not have the color yet
+    boolean add(int rgb) {
+        if (indexOf(rgb) >= 0) {
+            return true;
+        }
+        if (size == MAX_SIZE) {
+            return false;
+        }
+        int slot = slot(rgb);
+        while (keys[slot] != 0) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = rgb + 1;
+        indexes[slot] = size;
+        colors[size++] = rgb;
+        return true;
+    }
+
+    // Index of the color, -1 if it is not in the palette
+    int indexOf(int rgb) {
+        for (int slot = slot(rgb); keys[slot] != 0; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == rgb + 1) {
+                return indexes[slot];
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getRGB(int index) {
+        return colors[index];
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(colors, size);
+    }
+
+    private int slot(int rgb) {
+        return ((rgb * 0x9E3779B9) >>> 16) & (keys.length - 1);
+    }
+}
@@ -0,0 +1,198 @@
+package editor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+
+// Text canvas reader that parses with several threads. The file is cut into chunks that
+// end at a line break, each chunk is mapped, decoded and parsed by its own TextCanvasReader
+// (so with the same results as Shape.fromString), and the shapes are handed out chunk
+// by chunk in file order, which keeps the z-order. Only a window of chunks is parsed
+// ahead of the one being read, so memory does not grow with the file. The palette, the
+// COLOR lines at the top of the file (see Palette), is read first and given to every chunk;
+// chunks after it take COLOR lines as invalid, as TextCanvasReader does below the top.
+class ParallelTextCanvasReader implements CanvasReader {
+    static final int CHUNK_SIZE = 8 << 20;
+    private static final int SCAN_SIZE = 1 << 12; // bytes read at a time when looking for a line break
+
+    private final FileChannel channel;
+    private final long length;
+    private final Charset charset;
+    private final ExecutorService pool;
+    private final int window; // chunks being parsed or waiting to be read
+    private final int[] palette; // Only read by the parsers
+    private final long headerLength; // Bytes of the COLOR lines at the top
+    private final ArrayDeque<Future<Chunk>> parsing = new ArrayDeque<>();
+    private long submitted = 0; // chunks cover the file up to here
+
+    private Chunk current;
+    private int next = 0; // index of the next shape in current
+    private long bytesRead = 0; // end of the last chunk handed out completely
+    private int lineNumber = 0; // lines in the chunks before current
+
+    private final List<String> errors = new ArrayList<>();
+    private int errorCount = 0;
+
+    private static class Chunk {
+        final long start, end;
+        final List<Shape> shapes = new ArrayList<>();
+        int lines;
+        TextCanvasReader parser; // kept only if the chunk had invalid lines
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public ParallelTextCanvasReader(File file, int threads) throws IOException {
+        TextCanvasReader header = TextCanvasReader.readHeader(file);
+        this.palette = header.getPalette();
+        this.headerLength = header.getHeaderLength(); // Bytes, the charset writes ASCII as ASCII
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.length = channel.size();
+        this.charset = Charset.defaultCharset(); // what FileReader decodes with
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.window = threads * 2;
+    }
+
+    // Chunks can be cut at '\n' and '\r' bytes if the charset writes ASCII as ASCII (UTF-8, the
+    // ISO-8859 charsets, ...), in those they are never part of another character
+    static boolean supports(Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(charset), ascii);
+    }
+
+    @Override
+    public Shape next() throws IOException {
+        while (current == null || next == current.shapes.size()) {
+            if (current != null) {
+                bytesRead = current.end;
+                lineNumber += current.lines;
+                current = null;
+            }
+            submit();
+            if (parsing.isEmpty()) {
+                return null;
+            }
+            current = take(parsing.poll());
+            next = 0;
+            if (current.parser != null) {
+                errorCount += current.parser.getErrorCount();
+                for (String error : current.parser.getErrors(lineNumber)) {
+                    if (errors.size() < TextCanvasReader.MAX_REPORTED_ERRORS) {
+                        errors.add(error);
+                    }
+                }
+            }
+        }
+        return current.shapes.get(next++);
+    }
+
+    @Override
+    public double getProgress() {
+        return length == 0 ? 0 : (double) bytesRead / length;
+    }
+
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        channel.close();
+    }
+
+    // Keep the window of chunks full
+    private void submit() throws IOException {
+        while (parsing.size() < window && submitted < length) {
+            Chunk chunk = new Chunk(submitted, lineBreakAfter(Math.min(submitted + CHUNK_SIZE, length)));
+            submitted = chunk.end;
+            parsing.add(pool.submit(() -> parse(chunk)));
+        }
+    }
+
+    // Position just after the first line break at or after position, or the end of the file.
+    // Line breaks are "\n", "\r\n" or a lone '\r', as for BufferedReader.readLine, so files
+    // with old Mac line breaks are cut into chunks too.
+    private long lineBreakAfter(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        while (position < length) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    return followedByNewline(position + i + 1) ? position + i + 2 : position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return length;
+    }
+
+    // Keeps a "\r\n" in one chunk, so the next one does not start with an empty line
+    private boolean followedByNewline(long position) throws IOException {
+        if (position >= length) {
+            return false;
+        }
+        ByteBuffer next = ByteBuffer.allocate(1);
+        return channel.read(next, position) == 1 && next.get(0) == '\n';
+    }
+
+    private Chunk parse(Chunk chunk) throws IOException {
+        CharBuffer chars = charset.decode(channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start));
+        TextCanvasReader parser = new TextCanvasReader(
+                new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()),
+                palette, chunk.start < headerLength);
+        Shape shape;
+        while ((shape = parser.next()) != null) {
+            chunk.shapes.add(shape);
+        }
+        chunk.lines = parser.getLineNumber();
+        if (parser.getErrorCount() > 0) {
+            chunk.parser = parser;
+        }
+        return chunk;
+    }
+
+    private static Chunk take(Future<Chunk> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Parsing failed: " + e.getCause(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package editor;
+
+import java.io.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+// Writes an RGB PNG row by row, so an image never has to be in memory as a whole
+class PngStreamWriter implements Closeable {
+    private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final int width, height;
+    private final Deflater deflater = new Deflater();
+    private final DeflaterOutputStream pixels; // zlib stream, cut into IDAT chunks
+    private final byte[] row;
+    private int rowsWritten = 0;
+
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 3]; // filter type, then RGB per pixel
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.write(new byte[] { 8, 2, 0, 0, 0 }); // 8 bits per channel, RGB, deflate, no filter method, no interlace
+        writeChunk("IHDR", header.toByteArray(), header.size());
+        pixels = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+    }
+
+    // Append rows of packed RGB pixels (as in a TYPE_INT_RGB image) starting at offset
+    public void writeRows(int[] rgb, int offset, int scanlineStride, int rows) throws IOException {
+        if (rowsWritten + rows > height) {
+            throw new IllegalStateException("More rows than the image height");
+        }
+        for (int r = 0; r < rows; r++) {
+            int pixel = offset + r * scanlineStride;
+            row[0] = 0; // no filter
+            for (int x = 0, i = 1; x < width; x++) {
+                int value = rgb[pixel + x];
+                row[i++] = (byte) (value >> 16);
+                row[i++] = (byte) (value >> 8);
+                row[i++] = (byte) value;
+            }
+            pixels.write(row);
+        }
+        rowsWritten += rows;
+    }
+
+    // Ends the image once all rows are written, otherwise (cancelled or failed) just closes the stream
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten == height) {
+                pixels.finish();
+                pixels.flush();
+                writeChunk("IEND", new byte[0], 0);
+            }
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        DataOutputStream chunk = new DataOutputStream(out);
+        chunk.writeInt(length);
+        chunk.write(typeBytes);
+        chunk.write(data, 0, length);
+        chunk.writeInt((int) crc.getValue());
+    }
+
+    // Collects compressed bytes and writes them out as IDAT chunks
+    private class ChunkStream extends OutputStream {
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size = 0;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK_SIZE - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+                if (size == CHUNK_SIZE) {
+                    flush();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (size > 0) {
+                writeChunk("IDAT", buffer, size);
+                size = 0;
+            }
+        }
+    }
+}
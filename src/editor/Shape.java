@@ -0,0 +1,410 @@
+package editor;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+interface Shape {
+    void draw(Graphics g);
+    String toString();                      // Serialize the shape to a string representation
+    static Shape fromString(String s) {     // Deserialize the shape from a string representation
+        try{
+            // split the string into parts
+            String[] s_split = s.split(" ");
+            String shapeType = s_split[0];
+            if (shapeType.equals("GROUP")) { // Header, the children are on the lines after it
+                int count = Integer.parseInt(s_split[1]);
+                return count > 0 ? Group.header(count, Integer.parseInt(s_split[2]), Integer.parseInt(s_split[3])) : null;
+            }
+            int x = Integer.parseInt(s_split[1]);
+            int y = Integer.parseInt(s_split[2]);
+            // 3 last vals are RGB values
+            int red = Integer.parseInt(s_split[s_split.length - 3]);
+            int green = Integer.parseInt(s_split[s_split.length - 2]);
+            int blue = Integer.parseInt(s_split[s_split.length - 1]);
+            if ((red | green | blue) < 0 || red > 255 || green > 255 || blue > 255) {
+                return null;
+            }
+            int rgb = (red << 16) | (green << 8) | blue; // Packed like the shapes keep it, no Color
+            switch (shapeType) {
+                case "LINE":
+                    return new Line(x, y, Integer.parseInt(s_split[3]), Integer.parseInt(s_split[4]), rgb);
+                case "RECTANGLE":
+                    int width = Integer.parseInt(s_split[3]);
+                    int height = Integer.parseInt(s_split[4]);
+                    return new Rect(x, y, x + width, y + height, rgb);
+                case "CIRCLE":
+                    int radius = Integer.parseInt(s_split[3]);
+                    return new Circle(x, y, radius, rgb);
+                default:
+                    return null; // Unknown shape type
+            }
+        }
+        catch (Exception e) {
+            return null; // Return null if the string is not a valid shape representation
+        }
+    }
+    void write(ByteBuffer out);             // Serialize the shape to a fixed-width binary record (see BinaryCanvas)
+    static Shape read(ByteBuffer in) {      // Deserialize the shape from a binary record
+        byte tag = in.get();
+        int a = in.getInt();
+        int b = in.getInt();
+        int c = in.getInt();
+        int d = in.getInt();
+        int rgb = in.getInt() & 0xFFFFFF;
+        ShapeType type = ShapeType.of(tag);
+        if (type == ShapeType.LINE) {
+            return new Line(a, b, c, d, rgb);
+        } else if (type == ShapeType.RECTANGLE) {
+            return new Rect(a, b, a + c, b + d, rgb);
+        } else if (type == ShapeType.CIRCLE) {
+            return new Circle(a, b, c, rgb);
+        } else if (type == ShapeType.GROUP && a > 0) {
+            return Group.header(a, b, c); // The children are the records after it
+        }
+        return null; // Unknown shape type
+    }
+    int getCenterX();
+    int getCenterY();
+    int getRGB();                           // Color as packed RGB
+    void setRGB(int rgb);
+    Rectangle getBounds();                  // Bounding box of everything draw() paints
+    boolean intersects(Rectangle area);     // Same as getBounds().intersects(area), without allocating
+    boolean hit(int x, int y, int tolerance); // Whether draw() paints (x, y) or within tolerance of it, without allocating
+    Shape copy();                           // Independent copy, e.g. for a snapshot saved in the background
+    public void move(int dx, int dy);
+}
+
+// The shapes that are drawn with the mouse, by dragging from one point to another
+interface DrawnShape extends Shape {
+    void reshape(int x1, int y1, int x2, int y2); // Span the two points like the (Point, Point, Color) constructor
+}
+
+// Shapes keep their geometry in int fields and their color as packed RGB, instead of
+// Point, Rectangle and Color objects, to keep huge canvases small in memory.
+
+enum LineEnd {
+    START, END
+}
+
+class Line implements DrawnShape {
+    static final int LINE_WIDTH = 2;
+    static final BasicStroke STROKE = new BasicStroke(LINE_WIDTH); // Shared by all lines, strokes are immutable
+    private int x1, y1, x2, y2;
+    private int rgb;
+
+    public Line(int x1, int y1, int x2, int y2, int rgb) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.rgb = rgb;
+    }
+
+    public Line(Point start, Point end, Color color) {
+        this(start.x, start.y, end.x, end.y, color.getRGB() & 0xFFFFFF);
+    }
+    
+    @Override
+    public void draw(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        if (g2.getStroke() != STROKE) {
+            g2.setStroke(STROKE);  // Set line weight
+        }
+        ColorCache.apply(g, rgb);
+        g.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public String toString() {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        //return "LINE " + start.x + " " + start.y + " " + end.x + " " + end.y + " " + color.getRGB();
+        return "LINE " + x1 + " " + y1 + " " + x2 + " " + y2 + " " + red + " " + green + " " + blue;
+    }
+    @Override
+    public void write(ByteBuffer out) {
+        out.put(ShapeType.LINE.code);
+        out.putInt(x1).putInt(y1).putInt(x2).putInt(y2);
+        out.putInt(rgb);
+    }
+    @Override
+    public int getCenterX() {
+        return (x1 + x2) / 2;
+    }
+    @Override
+    public int getCenterY() {
+        return (y1 + y2) / 2;
+    }
+    @Override
+    public int getRGB() {
+        return rgb;
+    }
+    @Override
+    public void setRGB(int rgb) {
+        this.rgb = rgb;
+    }
+    public Point getStart() {
+        return new Point(x1, y1);
+    }
+    public Point getEnd() {
+        return new Point(x2, y2);
+    }
+    public int getEndX(LineEnd end) {
+        return end == LineEnd.START ? x1 : x2;
+    }
+    public int getEndY(LineEnd end) {
+        return end == LineEnd.START ? y1 : y2;
+    }
+    public void moveEnd(LineEnd end, int x, int y) {
+        if (end == LineEnd.START) {
+            x1 = x;
+            y1 = y;
+        } else {
+            x2 = x;
+            y2 = y;
+        }
+    }
+    @Override
+    public Shape copy() {
+        return new Line(x1, y1, x2, y2, rgb);
+    }
+    @Override
+    public Rectangle getBounds() {
+        Rectangle bounds = new Rectangle(x1, y1, 0, 0);
+        bounds.add(x2, y2);
+        bounds.grow(LINE_WIDTH, LINE_WIDTH); // Room for the line weight
+        return bounds;
+    }
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(Math.min(x1, x2) - LINE_WIDTH, Math.min(y1, y2) - LINE_WIDTH,
+                Math.abs(x1 - x2) + 2 * LINE_WIDTH, Math.abs(y1 - y2) + 2 * LINE_WIDTH);
+    }
+
+    // Distance from the point to the segment, against half the line weight (the square caps
+    // reach as far past the ends) plus the tolerance
+    @Override
+    public boolean hit(int x, int y, int tolerance) {
+        double reach = tolerance + LINE_WIDTH / 2.0;
+        long dx = (long) x2 - x1, dy = (long) y2 - y1;
+        long px = (long) x - x1, py = (long) y - y1;
+        long lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (double) (px * dx + py * dy) / lengthSquared));
+        double ex = px - t * dx, ey = py - t * dy;
+        return ex * ex + ey * ey <= reach * reach;
+    }
+
+    @Override
+    public void move(int dx, int dy) {
+        x1 += dx;
+        y1 += dy;
+        x2 += dx;
+        y2 += dy;
+    }
+
+    @Override
+    public void reshape(int x1, int y1, int x2, int y2) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+}
+
+class Rect implements DrawnShape {
+    private int x, y;
+    private int width, height;
+    private int rgb;
+
+    // Rectangle between two opposite corners
+    public Rect(int x1, int y1, int x2, int y2, int rgb) {
+        this.x = Math.min(x1, x2);
+        this.y = Math.min(y1, y2);
+        this.width = Math.abs(x1 - x2);
+        this.height = Math.abs(y1 - y2);
+        this.rgb = rgb;
+    }
+
+    public Rect(Point start, Point end, Color color) {
+        this(start.x, start.y, end.x, end.y, color.getRGB() & 0xFFFFFF);
+    }
+
+    @Override
+    public void draw(Graphics g) {
+        ColorCache.apply(g, rgb);
+        g.fillRect(x, y, width, height);
+    }
+
+    @Override
+    public String toString() {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        return "RECTANGLE " + x + " " + y + " " + width + " " + height + " " + red + " " + green + " " + blue;
+    }
+    @Override
+    public void write(ByteBuffer out) {
+        out.put(ShapeType.RECTANGLE.code);
+        out.putInt(x).putInt(y).putInt(width).putInt(height);
+        out.putInt(rgb);
+    }
+    @Override
+    public int getCenterX() {
+        return x + width / 2;
+    }
+    @Override
+    public int getCenterY() {
+        return y + height / 2;
+    }
+    @Override
+    public int getRGB() {
+        return rgb;
+    }
+    @Override
+    public void setRGB(int rgb) {
+        this.rgb = rgb;
+    }
+    @Override
+    public Shape copy() {
+        return new Rect(x, y, x + width, y + height, rgb);
+    }
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(x, y, width, height);
+    }
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(x, y, width, height);
+    }
+    @Override
+    public boolean hit(int px, int py, int tolerance) {
+        return (long) px >= (long) x - tolerance && (long) px <= (long) x + width + tolerance
+                && (long) py >= (long) y - tolerance && (long) py <= (long) y + height + tolerance;
+    }
+    @Override
+    public void move(int dx, int dy) {
+        x += dx;
+        y += dy;
+    }
+    @Override
+    public void reshape(int x1, int y1, int x2, int y2) {
+        x = Math.min(x1, x2);
+        y = Math.min(y1, y2);
+        width = Math.abs(x1 - x2);
+        height = Math.abs(y1 - y2);
+    }
+}
+
+class Circle implements DrawnShape {
+    private int x, y; // center
+    private int radius;
+    private int rgb;
+
+    public Circle(int x, int y, int radius, int rgb) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.rgb = rgb;
+    }
+
+    public Circle(Point center, Point edge, Color color) {
+        this(center.x, center.y, (int) center.distance(edge), color.getRGB() & 0xFFFFFF);
+    }
+
+    public Circle(Point center, int radius, Color color) {
+        this(center.x, center.y, radius, color.getRGB() & 0xFFFFFF);
+    }
+
+    @Override
+    public void draw(Graphics g) {
+        ColorCache.apply(g, rgb);
+        g.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+    }
+
+    @Override
+    public String toString() {
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        return "CIRCLE " + x + " " + y + " " + radius + " " + red + " " + green + " " + blue;
+    }
+    @Override
+    public void write(ByteBuffer out) {
+        out.put(ShapeType.CIRCLE.code);
+        out.putInt(x).putInt(y).putInt(radius).putInt(0);
+        out.putInt(rgb);
+    }
+
+    @Override
+    public int getCenterX() {
+        return x;
+    }
+    @Override
+    public int getCenterY() {
+        return y;
+    }
+    @Override
+    public int getRGB() {
+        return rgb;
+    }
+    @Override
+    public void setRGB(int rgb) {
+        this.rgb = rgb;
+    }
+    @Override
+    public Shape copy() {
+        return new Circle(x, y, radius, rgb);
+    }
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(x - radius, y - radius, radius * 2, radius * 2);
+    }
+    @Override
+    public boolean intersects(Rectangle area) {
+        return area.intersects(x - radius, y - radius, radius * 2, radius * 2);
+    }
+    @Override
+    public boolean hit(int px, int py, int tolerance) {
+        long dx = (long) px - x, dy = (long) py - y;
+        long reach = (long) radius + tolerance;
+        return dx * dx + dy * dy <= reach * reach;
+    }
+    @Override
+    public void move(int dx, int dy) {
+        x += dx;
+        y += dy;
+    }
+    @Override
+    public void reshape(int x1, int y1, int x2, int y2) { // from the center to a point on the edge
+        x = x1;
+        y = y1;
+        radius = (int) Point2D.distance(x1, y1, x2, y2);
+    }
+}
+
+// Color objects for the packed RGB values of the shapes, created only when a value is not cached
+class ColorCache {
+    private static final int SIZE = 1024;
+    private static final AtomicReferenceArray<Color> slots = new AtomicReferenceArray<>(SIZE); // shared by render threads
+
+    static Color get(int rgb) {
+        int slot = (rgb ^ (rgb >>> 10) ^ (rgb >>> 20)) & (SIZE - 1);
+        Color color = slots.get(slot);
+        if (color == null || (color.getRGB() & 0xFFFFFF) != rgb) {
+            color = new Color(rgb);
+            slots.set(slot, color);
+        }
+        return color;
+    }
+
+    // Set the color of g, unless it already is that color
+    static void apply(Graphics g, int rgb) {
+        Color current = g.getColor();
+        if (current == null || current.getRGB() != (0xFF000000 | rgb)) {
+            g.setColor(get(rgb));
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package editor;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+
+// Hierarchical grid over the bounds of the shapes, the candidate filter of the hit-test.
+// Level l has cells of CELL_SIZE * 4^l, and a shape is registered at the finest level where its
+// bounds span at most 2 x 2 cells, so every shape is in at most 4 cells however large it is.
+// A hit-test looks up the cells around the click point on each level that has shapes, and runs
+// the exact test of the shapes (Shape.hit) only on the shapes registered there.
+// Orders follow the shape list with ORDER_STEP between appended shapes, so shapes put back
+// between two others get orders of their own in the gap (see ordersBetween).
+class ShapeIndex {
+    static final long ORDER_STEP = 1 << 20;
+    private static final int CELL_SIZE = 64;
+    private static final int LEVELS = 13; // CELL_SIZE * 4^12 covers the int range
+
+    private static class Entry {
+        Shape shape;
+        long order; // same order as the shape list
+        int level, minCol, minRow, maxCol, maxRow; // cells the shape is registered in
+
+        Entry(Shape shape, long order) {
+            this.shape = shape;
+            this.order = order;
+        }
+    }
+
+    private final HashMap<Long, ArrayList<Entry>> cells = new HashMap<>();
+    private final IdentityHashMap<Shape, Entry> entries = new IdentityHashMap<>();
+    private final int[] levelSizes = new int[LEVELS]; // shapes registered per level
+    private long nextOrder = 0;
+    private int candidates = 0; // entries tested by the last topmostHit
+
+    // Register a shape appended to the end of the shape list
+    public void add(Shape shape) {
+        add(shape, nextOrder);
+    }
+
+    // Register a shape with an order from ordersBetween, or with its place in a canvas that is
+    // loaded out of order times ORDER_STEP
+    public void add(Shape shape, long order) {
+        nextOrder = Math.max(nextOrder, order + ORDER_STEP);
+        Entry entry = new Entry(shape, order);
+        entries.put(shape, entry);
+        register(entry);
+    }
+
+    // Returns the order the shape had, or -1 if it was not in the index
+    public long remove(Shape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null) {
+            return -1;
+        }
+        unregister(entry);
+        return entry.order;
+    }
+
+    // Distinct ascending orders for count shapes put between two registered shapes of the list,
+    // either of them null at an end of the list, or null if there is no room left between them
+    public long[] ordersBetween(Shape below, Shape above, int count) {
+        long low, high;
+        if (above == null) {
+            low = below == null ? nextOrder - ORDER_STEP : entries.get(below).order;
+            high = Math.max(nextOrder, low + ORDER_STEP) + count * ORDER_STEP;
+        } else {
+            high = entries.get(above).order;
+            low = below == null ? high - (count + 1) * ORDER_STEP : entries.get(below).order;
+        }
+        long gap = (high - low) / (count + 1);
+        if (gap == 0) {
+            return null;
+        }
+        long[] orders = new long[count];
+        for (int i = 0; i < count; i++) {
+            orders[i] = low + (i + 1) * gap;
+        }
+        return orders;
+    }
+
+    // Give the registered shapes of the list their position times ORDER_STEP as order, which
+    // leaves room for the shapes of the list that are not registered yet
+    public void renumber(List<Shape> shapes) {
+        for (int position = 0; position < shapes.size(); position++) {
+            Entry entry = entries.get(shapes.get(position));
+            if (entry != null) {
+                entry.order = position * ORDER_STEP;
+            }
+        }
+        nextOrder = shapes.size() * ORDER_STEP;
+    }
+
+    // Must be called after a shape was moved or one of its line ends was edited
+    public void update(Shape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null) {
+            return;
+        }
+        Rectangle bounds = shape.getBounds();
+        int level = levelOf(bounds);
+        if (level == entry.level && cellOf(bounds.x, level) == entry.minCol && cellOf(bounds.y, level) == entry.minRow
+                && cellOf(bounds.x + bounds.width, level) == entry.maxCol
+                && cellOf(bounds.y + bounds.height, level) == entry.maxRow) {
+            return; // still in the same cells
+        }
+        unregister(entry);
+        register(entry);
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        Arrays.fill(levelSizes, 0);
+    }
+
+    // Same place in the index for a copy of a registered shape
+    public void replace(Shape shape, Shape copy) {
+        Entry entry = entries.remove(shape);
+        entry.shape = copy;
+        entries.put(copy, entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int lastCandidates() {
+        return candidates;
+    }
+
+    // Topmost shape (last in list order) that has p on it or within tolerance of it, or null
+    public Shape topmostHit(Point p, int tolerance) {
+        Entry best = null;
+        candidates = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] == 0) {
+                continue;
+            }
+            for (int col = cellOf(p.x - tolerance, level); col <= cellOf(p.x + tolerance, level); col++) {
+                for (int row = cellOf(p.y - tolerance, level); row <= cellOf(p.y + tolerance, level); row++) {
+                    ArrayList<Entry> cell = cells.get(key(level, col, row));
+                    if (cell == null) {
+                        continue;
+                    }
+                    candidates += cell.size();
+                    for (Entry entry : cell) {
+                        if ((best == null || entry.order > best.order) && entry.shape.hit(p.x, p.y, tolerance)) {
+                            best = entry;
+                        }
+                    }
+                }
+            }
+        }
+        return best == null ? null : best.shape;
+    }
+
+    // Shapes that intersect area, in list order. Each level looks up the cells under the area,
+    // unless there are more of those than shapes, then it is cheaper to test every shape.
+    public List<Shape> intersecting(Rectangle area) {
+        ArrayList<Entry> found = new ArrayList<>();
+        long cellsToVisit = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] > 0) {
+                cellsToVisit += (long) (cellOf(area.x + area.width, level) - cellOf(area.x, level) + 1)
+                        * (cellOf(area.y + area.height, level) - cellOf(area.y, level) + 1);
+            }
+        }
+        if (cellsToVisit > entries.size()) {
+            for (Entry entry : entries.values()) {
+                if (entry.shape.intersects(area)) {
+                    found.add(entry);
+                }
+            }
+        } else {
+            for (int level = 0; level < LEVELS; level++) {
+                if (levelSizes[level] == 0) {
+                    continue;
+                }
+                int minCol = cellOf(area.x, level), minRow = cellOf(area.y, level);
+                for (int col = minCol; col <= cellOf(area.x + area.width, level); col++) {
+                    for (int row = minRow; row <= cellOf(area.y + area.height, level); row++) {
+                        ArrayList<Entry> cell = cells.get(key(level, col, row));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (Entry entry : cell) {
+                            // A shape in several of the cells is tested in the first of them only
+                            if (col == Math.max(entry.minCol, minCol) && row == Math.max(entry.minRow, minRow)
+                                    && entry.shape.intersects(area)) {
+                                found.add(entry);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        found.sort(Comparator.comparingLong(entry -> entry.order));
+        List<Shape> shapes = new ArrayList<>(found.size());
+        for (Entry entry : found) {
+            shapes.add(entry.shape);
+        }
+        return shapes;
+    }
+
+    // Order of a registered shape, ascending with its position in the list
+    public long orderOf(Shape shape) {
+        return entries.get(shape).order;
+    }
+
+    // End of the line within radius of p, start first, or null
+    static LineEnd lineEndAt(Line line, Point p, int radius) {
+        for (LineEnd end : LineEnd.values()) {
+            if (Point2D.distance(line.getEndX(end), line.getEndY(end), p.x, p.y) <= radius) {
+                return end;
+            }
+        }
+        return null;
+    }
+
+    // Finest level where the bounds span at most 2 x 2 cells
+    private static int levelOf(Rectangle bounds) {
+        int level = 0;
+        while (level < LEVELS - 1 && (cellOf(bounds.x + bounds.width, level) - cellOf(bounds.x, level) > 1
+                || cellOf(bounds.y + bounds.height, level) - cellOf(bounds.y, level) > 1)) {
+            level++;
+        }
+        return level;
+    }
+
+    private void register(Entry entry) {
+        Rectangle bounds = entry.shape.getBounds();
+        int level = levelOf(bounds);
+        entry.level = level;
+        entry.minCol = cellOf(bounds.x, level);
+        entry.minRow = cellOf(bounds.y, level);
+        entry.maxCol = cellOf(bounds.x + bounds.width, level);
+        entry.maxRow = cellOf(bounds.y + bounds.height, level);
+        for (int col = entry.minCol; col <= entry.maxCol; col++) {
+            for (int row = entry.minRow; row <= entry.maxRow; row++) {
+                cells.computeIfAbsent(key(level, col, row), k -> new ArrayList<>()).add(entry);
+            }
+        }
+        levelSizes[level]++;
+    }
+
+    private void unregister(Entry entry) {
+        for (int col = entry.minCol; col <= entry.maxCol; col++) {
+            for (int row = entry.minRow; row <= entry.maxRow; row++) {
+                Long key = key(entry.level, col, row);
+                ArrayList<Entry> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(entry);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+        levelSizes[entry.level]--;
+    }
+
+    private static int cellOf(int coordinate, int level) {
+        return (int) Math.floorDiv((long) coordinate, (long) CELL_SIZE << (2 * level));
+    }
+
+    // Long.hashCode of the plain (col, row) pair would be col ^ row, which is the same all along a
+    // diagonal. Multiplying by an odd constant keeps keys unique and spreads the bits over the hash.
+    // Columns and rows of level l fit in 32 - 6 - 2l bits, which leaves the top 4 bits for the level.
+    private static long key(int level, int col, int row) {
+        return ((((long) level << 60) | ((long) col & 0x0FFFFFFFL) << 32 | (row & 0xffffffffL))) * 0x9E3779B97F4A7C15L;
+    }
+}
@@ -0,0 +1,392 @@
+package editor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+
+
+// The shapes of the canvas, in drawing order, with O(1) snapshots for background readers
+// (save, export, autosave) while the editing thread goes on changing the canvas.
+//
+// The list is a B-tree of leaves of up to LEAF_SIZE shapes. Every node belongs to an owner,
+// and only nodes of the current owner are changed in place. snapshot() hands out the current
+// root and starts a new owner, which freezes every existing node: the next change to a frozen
+// node copies it and the path above it instead (like a persistent vector), so a snapshot
+// costs nothing up front and each later change copies O(log n) nodes at most once.
+//
+// Shapes are mutable, so they are frozen with their leaf: when a leaf is copied, its shapes
+// are copied too, and the list tells onCopy about each (old, copy) pair so references held
+// elsewhere (hit-test index, selection) can follow. Shapes to be changed in place must be
+// taken from edit(), which returns the list's own copy. Shapes added to the list must not
+// be in the list or in a snapshot already (add a copy instead).
+class ShapeList extends AbstractList<Shape> implements RandomAccess {
+    private static final int LEAF_SIZE = 64;
+    private static final int BRANCH_SIZE = 32;
+
+    private abstract static class Node {
+        final Object owner;
+        int size; // shapes below this node
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Shape[] shapes = new Shape[LEAF_SIZE];
+
+        Leaf(Object owner) {
+            super(owner);
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] children = new Node[BRANCH_SIZE];
+        int count;
+
+        Branch(Object owner) {
+            super(owner);
+        }
+    }
+
+    private final BiConsumer<Shape, Shape> onCopy;
+    private Object owner = new Object();
+    private Node root = new Leaf(owner);
+
+    ShapeList(BiConsumer<Shape, Shape> onCopy) {
+        this.onCopy = onCopy;
+    }
+
+    // Read-only view of the shapes as they are now, safe to hand to other threads.
+    // Its shapes must not be changed.
+    public List<Shape> snapshot() {
+        owner = new Object();
+        return new Snapshot(root);
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public Shape get(int position) {
+        checkIndex(position, root.size);
+        return find(root, position);
+    }
+
+    // The shape at position, made safe to change in place (it may be a new copy)
+    public Shape edit(int position) {
+        checkIndex(position, root.size);
+        root = writable(root);
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = 0;
+            while (position >= branch.children[child].size) {
+                position -= branch.children[child++].size;
+            }
+            node = branch.children[child] = writable(branch.children[child]);
+        }
+        return ((Leaf) node).shapes[position];
+    }
+
+    @Override
+    public void add(int position, Shape shape) {
+        checkIndex(position, root.size + 1);
+        root = writable(root);
+        Node split = insert(root, position, shape);
+        if (split != null) {
+            Branch branch = new Branch(owner);
+            branch.children[0] = root;
+            branch.children[1] = split;
+            branch.count = 2;
+            branch.size = root.size + split.size;
+            root = branch;
+        }
+        modCount++;
+    }
+
+    @Override
+    public Shape remove(int position) {
+        checkIndex(position, root.size);
+        root = writable(root);
+        Shape removed = remove(root, position);
+        while (root instanceof Branch && ((Branch) root).count == 1) {
+            root = ((Branch) root).children[0]; // one level less, the tree only grows at the root
+        }
+        if (root instanceof Branch && ((Branch) root).count == 0) {
+            root = new Leaf(owner);
+        }
+        modCount++;
+        return removed;
+    }
+
+    // Identity, like ArrayList.indexOf for shapes (they do not override equals)
+    @Override
+    public int indexOf(Object shape) {
+        int position = 0;
+        for (Shape s : this) {
+            if (s == shape) {
+                return position;
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    @Override
+    public Iterator<Shape> iterator() {
+        return new LeafIterator(root);
+    }
+
+    // A node of this owner, the node itself if it is one already
+    private Node writable(Node node) {
+        if (node.owner == owner) {
+            return node;
+        }
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            Leaf copy = new Leaf(owner);
+            copy.size = leaf.size;
+            for (int i = 0; i < leaf.size; i++) {
+                copy.shapes[i] = leaf.shapes[i].copy();
+                onCopy.accept(leaf.shapes[i], copy.shapes[i]);
+            }
+            return copy;
+        }
+        Branch branch = (Branch) node;
+        Branch copy = new Branch(owner);
+        System.arraycopy(branch.children, 0, copy.children, 0, branch.count);
+        copy.count = branch.count;
+        copy.size = branch.size;
+        return copy;
+    }
+
+    // Insert into a writable node, returns the new node to put after it if it had to be split
+    private Node insert(Node node, int position, Shape shape) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            if (leaf.size < LEAF_SIZE) {
+                System.arraycopy(leaf.shapes, position, leaf.shapes, position + 1, leaf.size - position);
+                leaf.shapes[position] = shape;
+                leaf.size++;
+                return null;
+            }
+            Leaf right = new Leaf(owner);
+            if (position == LEAF_SIZE) { // appending, keep this leaf full
+                right.shapes[0] = shape;
+                right.size = 1;
+                return right;
+            }
+            int half = LEAF_SIZE / 2;
+            System.arraycopy(leaf.shapes, half, right.shapes, 0, LEAF_SIZE - half);
+            Arrays.fill(leaf.shapes, half, LEAF_SIZE, null);
+            leaf.size = half;
+            right.size = LEAF_SIZE - half;
+            insert(position <= half ? leaf : right, position <= half ? position : position - half, shape);
+            return right;
+        }
+
+        Branch branch = (Branch) node;
+        int child = 0;
+        while (child < branch.count - 1 && position > branch.children[child].size) {
+            position -= branch.children[child++].size;
+        }
+        Node target = branch.children[child] = writable(branch.children[child]);
+        Node split = insert(target, position, shape);
+        branch.size++;
+        if (split == null) {
+            return null;
+        }
+        if (branch.count < BRANCH_SIZE) {
+            insertChild(branch, child + 1, split);
+            return null;
+        }
+        Branch right = new Branch(owner);
+        if (child + 1 == BRANCH_SIZE) { // appending, keep this branch full
+            insertChild(right, 0, split);
+        } else {
+            int half = BRANCH_SIZE / 2;
+            System.arraycopy(branch.children, half, right.children, 0, BRANCH_SIZE - half);
+            Arrays.fill(branch.children, half, BRANCH_SIZE, null);
+            branch.count = half;
+            right.count = BRANCH_SIZE - half;
+            if (child + 1 <= half) {
+                insertChild(branch, child + 1, split);
+            } else {
+                insertChild(right, child + 1 - half, split);
+            }
+        }
+        branch.size = sumSizes(branch);
+        right.size = sumSizes(right);
+        return right;
+    }
+
+    private static void insertChild(Branch branch, int index, Node child) {
+        System.arraycopy(branch.children, index, branch.children, index + 1, branch.count - index);
+        branch.children[index] = child;
+        branch.count++;
+    }
+
+    private static int sumSizes(Branch branch) {
+        int size = 0;
+        for (int i = 0; i < branch.count; i++) {
+            size += branch.children[i].size;
+        }
+        return size;
+    }
+
+    // Remove from a writable node, empty nodes are taken out of their parent and nodes less than
+    // a quarter full are merged with a neighbour when both fit in one, so a list that had many
+    // shapes removed does not keep a tree of nearly empty leaves
+    private Shape remove(Node node, int position) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            Shape removed = leaf.shapes[position];
+            System.arraycopy(leaf.shapes, position + 1, leaf.shapes, position, leaf.size - position - 1);
+            leaf.shapes[--leaf.size] = null;
+            return removed;
+        }
+        Branch branch = (Branch) node;
+        int child = 0;
+        while (position >= branch.children[child].size) {
+            position -= branch.children[child++].size;
+        }
+        Node target = branch.children[child] = writable(branch.children[child]);
+        Shape removed = remove(target, position);
+        branch.size--;
+        if (target.size == 0) {
+            removeChild(branch, child);
+        } else if (width(target) < capacity(target) / 4) {
+            merge(branch, child > 0 ? child - 1 : child);
+        }
+        return removed;
+    }
+
+    // Move the children of branch at index + 1 into the one at index, if there is room for them
+    private void merge(Branch branch, int index) {
+        if (index + 1 >= branch.count) {
+            return;
+        }
+        Node left = branch.children[index], right = branch.children[index + 1];
+        if (width(left) + width(right) > capacity(left)) {
+            return;
+        }
+        left = branch.children[index] = writable(left);
+        if (left instanceof Leaf) {
+            Leaf leaf = (Leaf) left;
+            Leaf from = (Leaf) writable(right); // Its shapes move, so they must be this owner's
+            System.arraycopy(from.shapes, 0, leaf.shapes, leaf.size, from.size);
+            leaf.size += from.size;
+        } else {
+            Branch to = (Branch) left;
+            Branch from = (Branch) right; // Only the references to its children move
+            System.arraycopy(from.children, 0, to.children, to.count, from.count);
+            to.count += from.count;
+            to.size += from.size;
+        }
+        removeChild(branch, index + 1);
+    }
+
+    private static void removeChild(Branch branch, int index) {
+        System.arraycopy(branch.children, index + 1, branch.children, index, branch.count - index - 1);
+        branch.children[--branch.count] = null;
+    }
+
+    // Shapes in a leaf or children of a branch
+    private static int width(Node node) {
+        return node instanceof Leaf ? node.size : ((Branch) node).count;
+    }
+
+    private static int capacity(Node node) {
+        return node instanceof Leaf ? LEAF_SIZE : BRANCH_SIZE;
+    }
+
+    private static Shape find(Node node, int position) {
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            int child = 0;
+            while (position >= branch.children[child].size) {
+                position -= branch.children[child++].size;
+            }
+            node = branch.children[child];
+        }
+        return ((Leaf) node).shapes[position];
+    }
+
+    private static void checkIndex(int position, int size) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size);
+        }
+    }
+
+    // Walks the leaves left to right, going down from the root once per leaf
+    private static final class LeafIterator implements Iterator<Shape> {
+        private final Node root;
+        private Leaf leaf;
+        private int offset = 0; // next shape in leaf
+        private int position = 0; // next shape in the list
+
+        LeafIterator(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < root.size;
+        }
+
+        @Override
+        public Shape next() {
+            if (position >= root.size) {
+                throw new NoSuchElementException();
+            }
+            if (leaf == null || offset == leaf.size) {
+                Node node = root;
+                int rest = position;
+                while (node instanceof Branch) {
+                    Branch branch = (Branch) node;
+                    int child = 0;
+                    while (rest >= branch.children[child].size) {
+                        rest -= branch.children[child++].size;
+                    }
+                    node = branch.children[child];
+                }
+                leaf = (Leaf) node;
+                offset = rest;
+            }
+            position++;
+            return leaf.shapes[offset++];
+        }
+    }
+
+    // Frozen tree: no owner can change its nodes any more
+    private static final class Snapshot extends AbstractList<Shape> implements RandomAccess {
+        private final Node root;
+
+        Snapshot(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        public int size() {
+            return root.size;
+        }
+
+        @Override
+        public Shape get(int position) {
+            checkIndex(position, root.size);
+            return find(root, position);
+        }
+
+        @Override
+        public Iterator<Shape> iterator() {
+            return new LeafIterator(root);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package editor;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+
+// Writes shapes as an SVG image, streaming: each shape is written as it comes, nothing is
+// kept but the end of the current path, so any number of shapes fits in constant memory.
+// Consecutive lines of the same color go into one <path>, a line that starts where the
+// previous one ended only adds an "L x y" to it. Lines are styled once in a <style>
+// element with the width and square caps they have on screen. Groups become <g> elements
+// that translate their children by the offset of the group.
+class SvgWriter implements CanvasWriter {
+    private static final int MAX_PATH_LINES = 1000; // Keep single elements small enough for editors
+
+    private final Writer out;
+    private final char[] digits = new char[11];
+    private int pathColor = -1; // Color of the open <path>, -1 if none is open
+    private int pathLines = 0;
+    private int pathX, pathY; // Where the open path ends
+
+    // area is the part of the canvas the image shows at width x height, background its color as packed RGB
+    public SvgWriter(OutputStream out, Rectangle area, int width, int height, int background) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+        write("<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        writeInt(width);
+        write("\" height=\"");
+        writeInt(height);
+        write("\" viewBox=\"");
+        writeInt(area.x);
+        write(" ");
+        writeInt(area.y);
+        write(" ");
+        writeInt(area.width);
+        write(" ");
+        writeInt(area.height);
+        write("\">\n<style>path{fill:none;stroke-width:" + Line.LINE_WIDTH + ";stroke-linecap:square}</style>\n<rect x=\"");
+        writeInt(area.x);
+        write("\" y=\"");
+        writeInt(area.y);
+        write("\" width=\"100%\" height=\"100%\" fill=\"");
+        writeColor(background);
+        write("\"/>\n");
+    }
+
+    @Override
+    public void write(Shape shape) throws IOException {
+        if (shape instanceof Line) {
+            writeLine((Line) shape);
+            return;
+        }
+        endPath();
+        if (shape instanceof Group) {
+            writeGroup((Group) shape);
+            return;
+        }
+        Rectangle bounds = shape.getBounds();
+        if (shape instanceof Circle) {
+            write("<circle cx=\"");
+            writeInt(shape.getCenterX());
+            write("\" cy=\"");
+            writeInt(shape.getCenterY());
+            write("\" r=\"");
+            writeInt(bounds.width / 2);
+        } else {
+            write("<rect x=\"");
+            writeInt(bounds.x);
+            write("\" y=\"");
+            writeInt(bounds.y);
+            write("\" width=\"");
+            writeInt(bounds.width);
+            write("\" height=\"");
+            writeInt(bounds.height);
+        }
+        write("\" fill=\"");
+        writeColor(shape.getRGB());
+        write("\"/>\n");
+    }
+
+    @Override
+    public void close() throws IOException {
+        endPath();
+        write("</svg>\n");
+        out.close();
+    }
+
+    private void writeGroup(Group group) throws IOException {
+        write("<g transform=\"translate(");
+        writeInt(group.getOffsetX());
+        write(" ");
+        writeInt(group.getOffsetY());
+        write(")\">\n");
+        for (int i = 0; i < group.size(); i++) {
+            write(group.getChild(i));
+        }
+        endPath();
+        write("</g>\n");
+    }
+
+    private void writeLine(Line line) throws IOException {
+        int x1 = line.getEndX(LineEnd.START), y1 = line.getEndY(LineEnd.START);
+        int x2 = line.getEndX(LineEnd.END), y2 = line.getEndY(LineEnd.END);
+        if (pathColor != line.getRGB() || pathLines == MAX_PATH_LINES) {
+            endPath();
+            write("<path stroke=\"");
+            writeColor(line.getRGB());
+            write("\" d=\"");
+            pathColor = line.getRGB();
+        }
+        if (pathLines == 0 || x1 != pathX || y1 != pathY) {
+            write("M");
+            writeInt(x1);
+            write(" ");
+            writeInt(y1);
+        }
+        write("L");
+        writeInt(x2);
+        write(" ");
+        writeInt(y2);
+        pathX = x2;
+        pathY = y2;
+        pathLines++;
+    }
+
+    private void endPath() throws IOException {
+        if (pathColor != -1) {
+            write("\"/>\n");
+            pathColor = -1;
+            pathLines = 0;
+        }
+    }
+
+    private void write(String s) throws IOException {
+        out.write(s);
+    }
+
+    // Integer.toString without the String
+    private void writeInt(int value) throws IOException {
+        long v = value; // Math.abs(Integer.MIN_VALUE) is negative
+        if (v < 0) {
+            out.write('-');
+            v = -v;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        out.write(digits, start, digits.length - start);
+    }
+
+    private void writeColor(int rgb) throws IOException {
+        out.write('#');
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            out.write(Character.forDigit((rgb >> shift) & 0xF, 16));
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package editor;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+// Streaming reader for the text canvas format. Lines are scanned in place in a reused
+// char buffer (no split, no substrings) with the same results as Shape.fromString.
+// Blank lines are skipped, and so are invalid lines, which are reported with their line
+// numbers. "COLOR index R G B" lines at the top of the file, before any other line that is
+// not blank, define palette colors, which shape lines ending with "@index" take (see Palette);
+// Shape.fromString does not know those. COLOR lines further down are invalid, so a chunk of
+// a file parsed on its own (see ParallelTextCanvasReader) needs only the palette of the top.
+class TextCanvasReader implements CanvasReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final Reader in;
+    private final long length; // size of the file in bytes, 0 if unknown
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0, limit = 0; // unread chars are buffer[pos..limit)
+    private boolean eof = false;
+    private boolean skipLF = false; // last line ended with '\r', a following '\n' belongs to it
+    private long charsRead = 0;
+
+    private int lineStart, lineEnd; // current line is buffer[lineStart..lineEnd)
+    private int lineNumber = 0;
+    private int[] tokenStarts = new int[8], tokenEnds = new int[8];
+    private String error; // why the current line is invalid, null if it is valid
+    private boolean skipped; // the current line was blank or a valid COLOR line, not an error
+    private final int[] palette; // packed RGB by index, -1 if not defined
+    private boolean header; // only COLOR lines and blank lines so far
+    private long headerLength = 0; // characters before the first other line, once header is false
+
+    private final List<String> errors = new ArrayList<>(); // messages of the first invalid lines
+    private final List<Integer> errorLines = new ArrayList<>();
+    private int errorCount = 0;
+
+    public TextCanvasReader(Reader in) {
+        this(in, null, true);
+    }
+
+    // Input that starts with the palette already defined, e.g. a chunk of a file. header tells
+    // whether the input starts among the COLOR lines at the top of the file.
+    TextCanvasReader(Reader in, int[] palette, boolean header) {
+        this.in = in;
+        this.length = 0;
+        this.palette = newPalette(palette);
+        this.header = header;
+    }
+
+    public TextCanvasReader(File file) throws IOException {
+        this.in = new FileReader(file);
+        this.length = file.length();
+        this.palette = newPalette(null);
+        this.header = true;
+    }
+
+    private static int[] newPalette(int[] defined) {
+        int[] palette = new int[Palette.MAX_SIZE];
+        Arrays.fill(palette, -1);
+        if (defined != null) {
+            System.arraycopy(defined, 0, palette, 0, Math.min(defined.length, palette.length));
+        }
+        return palette;
+    }
+
+    // Reader that has read the COLOR lines at the top of a file, up to the first other line that
+    // is not blank, for getPalette and getHeaderLength. It is closed.
+    static TextCanvasReader readHeader(File file) throws IOException {
+        try (TextCanvasReader reader = new TextCanvasReader(file)) {
+            while (reader.header && reader.nextLine()) {
+                reader.error = null;
+                reader.parseLine();
+            }
+            return reader;
+        }
+    }
+
+    // Characters the COLOR lines at the top of the input take, with the blank lines among them
+    long getHeaderLength() {
+        return header ? charsRead : headerLength;
+    }
+
+    // Colors defined so far, -1 for the indexes that are not
+    int[] getPalette() {
+        return palette.clone();
+    }
+
+    // Next valid shape, or null at the end of the input
+    @Override
+    public Shape next() throws IOException {
+        while (nextLine()) {
+            lineNumber++;
+            error = null;
+            skipped = false;
+            Shape shape = parseLine();
+            if (shape != null) {
+                return shape;
+            }
+            if (skipped) {
+                continue;
+            }
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+                errorLines.add(lineNumber);
+            }
+        }
+        return null;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public long getCharsRead() {
+        return charsRead;
+    }
+
+    // Characters are counted as bytes, which holds for the ASCII the format is written in
+    @Override
+    public double getProgress() {
+        return length == 0 ? 0 : Math.min(1, (double) charsRead / length);
+    }
+
+    // Number of invalid lines so far, only the first MAX_REPORTED_ERRORS are kept in getErrors()
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public List<String> getErrors() {
+        return getErrors(0);
+    }
+
+    // The errors with lineOffset added to their line numbers, for input that starts inside a file
+    List<String> getErrors(int lineOffset) {
+        List<String> result = new ArrayList<>(errors.size());
+        for (int i = 0; i < errors.size(); i++) {
+            result.add("line " + (errorLines.get(i) + lineOffset) + ": " + errors.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Find the next line, ending at '\n', '\r', "\r\n" or the end of input (like BufferedReader.readLine)
+    private boolean nextLine() throws IOException {
+        int scan = pos;
+        while (true) {
+            if (scan == limit) {
+                if (eof) {
+                    break;
+                }
+                scan = fill(scan);
+                continue;
+            }
+            char c = buffer[scan];
+            if (skipLF) {
+                skipLF = false;
+                if (c == '\n') {
+                    pos = ++scan;
+                    continue;
+                }
+            }
+            if (c == '\n' || c == '\r') {
+                lineStart = pos;
+                lineEnd = scan;
+                pos = scan + 1;
+                skipLF = c == '\r';
+                return true;
+            }
+            scan++;
+        }
+        if (scan > pos) { // last line without a line break
+            lineStart = pos;
+            lineEnd = scan;
+            pos = scan;
+            return true;
+        }
+        return false;
+    }
+
+    // Move the unfinished line to the front of the buffer and read more input after it
+    private int fill(int scan) throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            scan -= pos;
+            limit -= pos;
+            pos = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2); // line longer than the buffer
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+            charsRead += n;
+        }
+        return scan;
+    }
+
+    // Same rules as Shape.fromString: values are separated by single spaces, the RGB values
+    // (or "@index" of a palette color) are the last tokens, and extra tokens in between are ignored
+    private Shape parseLine() {
+        int count = tokenize();
+        if (count == 0) { // Blank line, e.g. at the end of the file
+            skipped = true;
+            return null;
+        }
+        if (tokenIs(0, "COLOR")) { // Palette color, not a shape
+            if (!header) {
+                error = "COLOR lines must come before the shapes";
+                return null;
+            }
+            int index = count > 4 ? parseToken(1) : missing();
+            int rgb = count > 4 ? parseColor(2) : 0;
+            if (error == null && (index < 0 || index >= palette.length)) {
+                error = "palette index must be between 0 and " + (palette.length - 1);
+            }
+            if (error == null) {
+                palette[index] = rgb;
+                skipped = true;
+            }
+            return null;
+        }
+        if (header) { // First other line, the palette is complete
+            header = false;
+            headerLength = charsRead - (limit - lineStart);
+        }
+        if (tokenIs(0, "GROUP")) { // Header, the children are on the lines after it
+            int children = count > 3 ? parseToken(1) : missing();
+            int dx = count > 3 ? parseToken(2) : 0;
+            int dy = count > 3 ? parseToken(3) : 0;
+            if (error == null && children <= 0) {
+                error = "a group needs at least one shape";
+            }
+            return error == null ? Group.header(children, dx, dy) : null;
+        }
+        if (count < 3) {
+            error = "missing values";
+            return null;
+        }
+        int x = parseToken(1);
+        int y = parseToken(2);
+        int rgb = isReference(count - 1) ? paletteColor(count - 1) : parseColor(count - 3);
+        if (error != null) {
+            return null;
+        }
+        if (tokenIs(0, "LINE")) {
+            int x2 = count > 4 ? parseToken(3) : missing();
+            int y2 = count > 4 ? parseToken(4) : missing();
+            return error == null ? new Line(x, y, x2, y2, rgb) : null;
+        } else if (tokenIs(0, "RECTANGLE")) {
+            int width = count > 4 ? parseToken(3) : missing();
+            int height = count > 4 ? parseToken(4) : missing();
+            return error == null ? new Rect(x, y, x + width, y + height, rgb) : null;
+        } else if (tokenIs(0, "CIRCLE")) {
+            int radius = count > 3 ? parseToken(3) : missing();
+            return error == null ? new Circle(x, y, radius, rgb) : null;
+        }
+        error = "unknown shape type '" + new String(buffer, tokenStarts[0], tokenEnds[0] - tokenStarts[0]) + "'";
+        return null;
+    }
+
+    // Split the current line at every single space, dropping trailing empty tokens like String.split
+    private int tokenize() {
+        int count = 0;
+        int start = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || buffer[i] == ' ') {
+                if (count == tokenStarts.length) {
+                    tokenStarts = Arrays.copyOf(tokenStarts, count * 2);
+                    tokenEnds = Arrays.copyOf(tokenEnds, count * 2);
+                }
+                tokenStarts[count] = start;
+                tokenEnds[count] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+        while (count > 0 && tokenStarts[count - 1] == tokenEnds[count - 1]) {
+            count--;
+        }
+        return count;
+    }
+
+    // Packed RGB of the three tokens from first on
+    private int parseColor(int first) {
+        int red = parseToken(first);
+        int green = parseToken(first + 1);
+        int blue = parseToken(first + 2);
+        if (error == null && ((red | green | blue) < 0 || red > 255 || green > 255 || blue > 255)) {
+            error = "color values must be between 0 and 255";
+        }
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    private boolean isReference(int token) {
+        return tokenEnds[token] > tokenStarts[token] && buffer[tokenStarts[token]] == '@';
+    }
+
+    // Color of an "@index" token, sets error if the palette does not define it
+    private int paletteColor(int token) {
+        int index = parseNumber(token, tokenStarts[token] + 1);
+        if (error == null && (index < 0 || index >= palette.length || palette[index] < 0)) {
+            error = "undefined palette color '" + new String(buffer, tokenStarts[token], tokenEnds[token] - tokenStarts[token]) + "'";
+        }
+        return error == null ? palette[index] : 0;
+    }
+
+    private boolean tokenIs(int token, String value) {
+        int start = tokenStarts[token];
+        if (tokenEnds[token] - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Integer.parseInt on a token without creating a String, sets error if it is not a valid int
+    private int parseToken(int token) {
+        return parseNumber(token, tokenStarts[token]);
+    }
+
+    // parseToken on the part of the token from start on
+    private int parseNumber(int token, int start) {
+        int i = start;
+        int end = tokenEnds[token];
+        boolean negative = false;
+        int limit = -Integer.MAX_VALUE;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            if (negative) {
+                limit = Integer.MIN_VALUE;
+            }
+            i++;
+        }
+        if (i == end) {
+            return invalid(token);
+        }
+        int multiplyLimit = limit / 10;
+        int result = 0; // accumulated negatively, like Integer.parseInt
+        for (; i < end; i++) {
+            int digit = Character.digit(buffer[i], 10);
+            if (digit < 0 || result < multiplyLimit) {
+                return invalid(token);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return invalid(token);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private int invalid(int token) {
+        if (error == null) {
+            error = "invalid number '" + new String(buffer, tokenStarts[token], tokenEnds[token] - tokenStarts[token]) + "'";
+        }
+        return 0;
+    }
+
+    private int missing() {
+        if (error == null) {
+            error = "missing values";
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,276 @@
+package editor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.*;
+
+
+// Small previews of canvas files, for the load dialog. A preview is rendered from the whole file
+// once and stored as a PNG in a folder on disk, named after a hash of the path, size and
+// modification time of the file, so a changed file gets a new preview and browsing a folder
+// again only reads the PNGs. The folder keeps the MAX_ENTRIES most recently used previews: a hit
+// touches the modification time of its PNG and the oldest ones are deleted when it is full. The
+// last previews shown are also kept in memory.
+class ThumbnailCache {
+    static final int SIZE = 160; // Previews fit into SIZE x SIZE
+    private static final int MAX_ENTRIES = 500;
+    private static final int MEMORY_ENTRIES = 64;
+
+    private final File dir;
+    private final Map<String, BufferedImage> memory = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    // One file at a time, and only the latest request waits (see request)
+    private final ThreadPoolExecutor renderer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), task -> {
+                Thread thread = new Thread(task, "thumbnails");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    ThumbnailCache(File dir) {
+        this.dir = dir;
+    }
+
+    // Folder of the previews, can be changed with -Dthumbnail.dir=...
+    static File defaultDir() {
+        return new File(System.getProperty("thumbnail.dir",
+                System.getProperty("user.home") + File.separator + ".vector-graphics-editor" + File.separator + "thumbnails"));
+    }
+
+    // Get the preview of a file in the background and pass it to done on the event dispatch thread,
+    // null if the file cannot be read. Requests that did not start yet are dropped, so going
+    // through a folder only renders the file the user stops at.
+    void request(File file, Consumer<BufferedImage> done) {
+        BufferedImage image = cached(file);
+        if (image != null) {
+            done.accept(image);
+            return;
+        }
+        renderer.getQueue().clear();
+        renderer.execute(() -> {
+            BufferedImage preview;
+            try {
+                preview = get(file);
+            } catch (IOException | RuntimeException e) {
+                preview = null;
+            }
+            BufferedImage result = preview;
+            SwingUtilities.invokeLater(() -> done.accept(result));
+        });
+    }
+
+    // The preview if it is in memory, null otherwise
+    synchronized BufferedImage cached(File file) {
+        return memory.get(key(file));
+    }
+
+    // The preview from memory, from disk, or rendered from the file and stored
+    BufferedImage get(File file) throws IOException {
+        long start = System.nanoTime();
+        String key = key(file);
+        BufferedImage image;
+        synchronized (this) {
+            image = memory.get(key);
+        }
+        if (image == null) {
+            image = readStored(key);
+        }
+        if (image == null) {
+            image = render(file);
+            store(key, image);
+        }
+        synchronized (this) {
+            memory.put(key, image);
+        }
+        Metrics.THUMBNAIL_TIME.record(System.nanoTime() - start);
+        return image;
+    }
+
+    // The whole canvas fitted into SIZE x SIZE. Two passes over the file, one for the bounds and
+    // one to draw the shapes, so a binary or text canvas is never in memory. A tiled canvas has
+    // the bounds in its index, but it is read whole to give the shapes in canvas order (see
+    // TiledCanvasReader.next).
+    static BufferedImage render(File file) throws IOException {
+        Rectangle extent = null;
+        if (TiledCanvas.isTiled(file)) {
+            try (TiledCanvasReader reader = new TiledCanvasReader(file)) {
+                for (TiledCanvas.Tile tile : reader.getTiles()) {
+                    if (extent == null) {
+                        extent = new Rectangle(tile.bounds);
+                    } else {
+                        extent.add(tile.bounds);
+                    }
+                }
+            }
+        } else {
+            try (CanvasReader reader = CanvasReader.open(file)) {
+                Shape shape;
+                while ((shape = reader.next()) != null) {
+                    if (extent == null) {
+                        extent = shape.getBounds();
+                    } else {
+                        extent.add(shape.getBounds());
+                    }
+                }
+            }
+        }
+        if (extent == null) {
+            extent = new Rectangle(0, 0, 1, 1);
+        }
+        extent.width = Math.max(extent.width, 1);
+        extent.height = Math.max(extent.height, 1);
+        double scale = Math.min((double) SIZE / extent.width, (double) SIZE / extent.height);
+        int width = Math.max(1, (int) Math.ceil(extent.width * scale));
+        int height = Math.max(1, (int) Math.ceil(extent.height * scale));
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try (CanvasReader reader = CanvasReader.open(file)) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.transform(CanvasRenderer.imageView(extent.getLocation(), scale));
+            CanvasRenderer.beginPass(g);
+            Shape shape;
+            while ((shape = reader.next()) != null) {
+                shape.draw(g);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private BufferedImage readStored(String key) {
+        File stored = new File(dir, key + ".png");
+        if (!stored.isFile()) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(stored);
+            stored.setLastModified(System.currentTimeMillis()); // Most recently used
+            return image;
+        } catch (IOException e) {
+            return null; // Rendered and stored again
+        }
+    }
+
+    // Write next to the target and rename it, so a preview is never read half written
+    private void store(String key, BufferedImage image) {
+        try {
+            Files.createDirectories(dir.toPath());
+            File part = new File(dir, key + ".part");
+            if (!ImageIO.write(image, "png", part)) {
+                return;
+            }
+            Files.move(part.toPath(), new File(dir, key + ".png").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        } catch (IOException e) {
+            // A preview that cannot be stored is rendered again next time
+        }
+    }
+
+    // Delete the least recently used previews over MAX_ENTRIES
+    private void evict() {
+        File[] stored = dir.listFiles((d, name) -> name.endsWith(".png"));
+        if (stored == null || stored.length <= MAX_ENTRIES) {
+            return;
+        }
+        long[] used = new long[stored.length];
+        Integer[] order = new Integer[stored.length];
+        for (int i = 0; i < stored.length; i++) {
+            used[i] = stored[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> used[i]));
+        for (int i = 0; i < stored.length - MAX_ENTRIES; i++) {
+            stored[order[i]].delete();
+        }
+    }
+
+    private static String key(File file) {
+        String id = file.getAbsolutePath() + '\n' + file.length() + '\n' + file.lastModified();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform has SHA-1
+        }
+    }
+}
+
+// Shows the preview of the file selected in a JFileChooser, next to the file list
+class ThumbnailAccessory extends JComponent {
+    private static final int MARGIN = 8;
+
+    private final ThumbnailCache cache;
+    private File file; // Selected file, null if none or a folder
+    private BufferedImage image; // Its preview, null while it is made or if it cannot be
+    private boolean failed;
+
+    ThumbnailAccessory(JFileChooser chooser, ThumbnailCache cache) {
+        this.cache = cache;
+        setPreferredSize(new Dimension(ThumbnailCache.SIZE + 2 * MARGIN, ThumbnailCache.SIZE + 2 * MARGIN));
+        chooser.addPropertyChangeListener(JFileChooser.SELECTED_FILE_CHANGED_PROPERTY, this::selectionChanged);
+    }
+
+    private void selectionChanged(PropertyChangeEvent e) {
+        File selected = (File) e.getNewValue();
+        file = selected != null && selected.isFile() ? selected : null;
+        image = null;
+        failed = false;
+        if (file != null) {
+            File requested = file;
+            cache.request(requested, preview -> {
+                if (requested.equals(file)) { // Not for a file selected before
+                    image = preview;
+                    failed = preview == null;
+                    repaint();
+                }
+            });
+        }
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (file == null) {
+            return;
+        }
+        if (image != null) {
+            g.drawImage(image, (getWidth() - image.getWidth()) / 2, (getHeight() - image.getHeight()) / 2, null);
+            g.setColor(Color.GRAY);
+            g.drawRect((getWidth() - image.getWidth()) / 2 - 1, (getHeight() - image.getHeight()) / 2 - 1,
+                    image.getWidth() + 1, image.getHeight() + 1);
+            return;
+        }
+        String text = failed ? "No preview" : "Loading preview...";
+        g.setColor(Color.GRAY);
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(text, (getWidth() - metrics.stringWidth(text)) / 2, getHeight() / 2);
+    }
+}
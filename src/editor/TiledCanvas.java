@@ -0,0 +1,355 @@
+package editor;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+// Tiled canvas file (.vgt): the shapes are bucketed by the square tile of the canvas their center
+// is in, and each tile is a separately compressed chunk that an index in the header locates, so
+// the tiles of a region can be read without the rest. All values big-endian:
+//   header: magic "VGT1", int version, int tile size, long shape count, int tile count
+//   index:  per tile int column, int row, 4 ints bounds of its shapes (x, y, width, height),
+//           int shape count, long offset of the chunk, int compressed length, int length
+//   chunk:  Deflate of the shapes of the tile in canvas order, each an int order (its place in
+//           the canvas) followed by its records in the binary format (see BinaryCanvas)
+// The bounds in the index are those of the shapes, not of the tile, so a shape that reaches out
+// of its tile is still found by the regions it reaches into.
+class TiledCanvas {
+    static final int MAGIC = 0x56475431; // "VGT1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4;
+    static final int INDEX_ENTRY_SIZE = 4 * 2 + 4 * 4 + 4 + 8 + 4 + 4;
+    static final int DEFAULT_TILE_SIZE = 1024;
+
+    // Where a tile's chunk is and what it holds
+    static final class Tile {
+        final int column, row;
+        final Rectangle bounds; // Of the shapes in the tile
+        final int count;
+        final long offset;
+        final int compressedLength, length;
+
+        Tile(int column, int row, Rectangle bounds, int count, long offset, int compressedLength, int length) {
+            this.column = column;
+            this.row = row;
+            this.bounds = bounds;
+            this.count = count;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+        }
+    }
+
+    // The shapes of a tile as read, in canvas order
+    static final class TileShapes {
+        final Tile tile;
+        final Shape[] shapes;
+        final int[] orders; // Places of the shapes in the canvas
+
+        TileShapes(Tile tile, Shape[] shapes, int[] orders) {
+            this.tile = tile;
+            this.shapes = shapes;
+            this.orders = orders;
+        }
+    }
+
+    // Check the magic number, so files are recognized whatever their extension
+    public static boolean isTiled(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+}
+
+// Buckets the shapes by tile in memory, uncompressed, and writes the chunks one after another
+// on close, with the header and index in front of them
+class TiledCanvasWriter implements CanvasWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final class TileBuffer {
+        ByteBuffer data = ByteBuffer.allocate(256);
+        Rectangle bounds;
+        int count;
+    }
+
+    private final FileChannel channel;
+    private final int tileSize;
+    private final LinkedHashMap<Long, TileBuffer> tiles = new LinkedHashMap<>();
+    private ByteBuffer record = ByteBuffer.allocate(BUFFER_SIZE); // Records of the shape being written
+    private int count = 0;
+
+    public TiledCanvasWriter(File file) throws IOException {
+        this(file, TiledCanvas.DEFAULT_TILE_SIZE);
+    }
+
+    public TiledCanvasWriter(File file, int tileSize) throws IOException {
+        this.tileSize = tileSize;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void write(Shape shape) throws IOException {
+        record.clear();
+        record.putInt(count++);
+        writeRecords(shape);
+        record.flip();
+        int column = Math.floorDiv(shape.getCenterX(), tileSize);
+        int row = Math.floorDiv(shape.getCenterY(), tileSize);
+        TileBuffer tile = tiles.computeIfAbsent(((long) column << 32) | (row & 0xFFFFFFFFL), key -> new TileBuffer());
+        if (tile.data.remaining() < record.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(tile.data.capacity() * 2, tile.data.position() + record.remaining()));
+            tile.data.flip();
+            tile.data = grown.put(tile.data);
+        }
+        tile.data.put(record);
+        if (tile.bounds == null) {
+            tile.bounds = shape.getBounds();
+        } else {
+            tile.bounds.add(shape.getBounds());
+        }
+        tile.count++;
+    }
+
+    private void writeRecords(Shape shape) {
+        if (record.remaining() < BinaryCanvas.RECORD_SIZE) {
+            record = ByteBuffer.allocate(record.capacity() * 2).put((ByteBuffer) record.flip());
+        }
+        shape.write(record);
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            for (int i = 0; i < group.size(); i++) {
+                writeRecords(group.getChild(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long indexSize = (long) tiles.size() * TiledCanvas.INDEX_ENTRY_SIZE;
+            ByteBuffer index = ByteBuffer.allocate((int) (TiledCanvas.HEADER_SIZE + indexSize));
+            index.putInt(TiledCanvas.MAGIC).putInt(TiledCanvas.VERSION).putInt(tileSize)
+                    .putLong(count).putInt(tiles.size());
+            long offset = index.capacity();
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+            try {
+                for (Map.Entry<Long, TileBuffer> entry : tiles.entrySet()) {
+                    TileBuffer tile = entry.getValue();
+                    deflater.reset();
+                    deflater.setInput(tile.data.array(), 0, tile.data.position());
+                    deflater.finish();
+                    int compressed = 0;
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(out.array());
+                        out.limit(n).position(0);
+                        while (out.hasRemaining()) {
+                            channel.write(out, offset + compressed + out.position());
+                        }
+                        compressed += n;
+                    }
+                    Rectangle bounds = tile.bounds;
+                    index.putInt((int) (entry.getKey() >> 32)).putInt((int) (long) entry.getKey())
+                            .putInt(bounds.x).putInt(bounds.y).putInt(bounds.width).putInt(bounds.height)
+                            .putInt(tile.count).putLong(offset).putInt(compressed).putInt(tile.data.position());
+                    offset += compressed;
+                    entry.setValue(null); // Written, its memory can go
+                }
+            } finally {
+                deflater.end();
+            }
+            index.flip();
+            while (index.hasRemaining()) {
+                channel.write(index, index.position());
+            }
+            channel.force(false); // On disk before the caller renames it over an older file
+        } finally {
+            channel.close();
+        }
+    }
+}
+
+// Reads the index of a tiled canvas, and the shapes of any of its tiles. As a CanvasReader it
+// gives all shapes in canvas order, which needs all tiles read first, so the whole canvas is in
+// memory then (a shape early in the canvas can be in any tile); the editor loads tile by tile
+// instead, starting with the tiles in view.
+class TiledCanvasReader implements CanvasReader {
+    private final FileChannel channel;
+    private final int tileSize;
+    private final int count;
+    private final List<TiledCanvas.Tile> tiles;
+    private final Inflater inflater = new Inflater();
+
+    private Shape[] shapes; // In canvas order, once next() was called
+    private int next = 0;
+
+    public TiledCanvasReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(0, TiledCanvas.HEADER_SIZE);
+            if (header.getInt() != TiledCanvas.MAGIC) {
+                throw new IOException("Not a tiled canvas file");
+            }
+            int version = header.getInt();
+            if (version != TiledCanvas.VERSION) {
+                throw new IOException("Unsupported canvas version " + version);
+            }
+            tileSize = header.getInt();
+            long shapeCount = header.getLong();
+            int tileCount = header.getInt();
+            if (shapeCount < 0 || shapeCount > Integer.MAX_VALUE - 8 || tileCount < 0
+                    || TiledCanvas.HEADER_SIZE + (long) tileCount * TiledCanvas.INDEX_ENTRY_SIZE > channel.size()) {
+                throw new IOException("Canvas file is truncated");
+            }
+            count = (int) shapeCount;
+            ByteBuffer index = read(TiledCanvas.HEADER_SIZE, tileCount * TiledCanvas.INDEX_ENTRY_SIZE);
+            tiles = new ArrayList<>(tileCount);
+            long shapesInTiles = 0;
+            for (int i = 0; i < tileCount; i++) {
+                TiledCanvas.Tile tile = new TiledCanvas.Tile(index.getInt(), index.getInt(),
+                        new Rectangle(index.getInt(), index.getInt(), index.getInt(), index.getInt()),
+                        index.getInt(), index.getLong(), index.getInt(), index.getInt());
+                if (tile.count < 0 || tile.compressedLength < 0 || tile.length < 0
+                        || tile.offset < 0 || tile.offset + tile.compressedLength > channel.size()) {
+                    throw new IOException("Canvas file is truncated");
+                }
+                shapesInTiles += tile.count;
+                tiles.add(tile);
+            }
+            if (shapesInTiles != count) {
+                throw new IOException("Tile index does not match the shape count");
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    // Number of shapes in the file
+    public int size() {
+        return count;
+    }
+
+    public List<TiledCanvas.Tile> getTiles() {
+        return tiles;
+    }
+
+    public TiledCanvas.TileShapes read(TiledCanvas.Tile tile) throws IOException {
+        ByteBuffer compressed = read(tile.offset, tile.compressedLength);
+        byte[] data = new byte[tile.length + 1]; // A byte more to notice a chunk longer than the index says
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, tile.compressedLength);
+        try {
+            int length = 0;
+            while (!inflater.finished() && length < data.length) {
+                int n = inflater.inflate(data, length, data.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != tile.length || !inflater.finished()) {
+                throw new IOException("Tile " + tile.column + ", " + tile.row + " is corrupt");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Tile " + tile.column + ", " + tile.row + " is corrupt", e);
+        }
+        ByteBuffer records = ByteBuffer.wrap(data, 0, tile.length);
+        Shape[] result = new Shape[tile.count];
+        int[] orders = new int[tile.count];
+        try {
+            for (int i = 0; i < result.length; i++) {
+                orders[i] = records.getInt();
+                if (orders[i] < 0 || orders[i] >= count) {
+                    throw new IOException("Shape order out of range in tile " + tile.column + ", " + tile.row);
+                }
+                result[i] = readShape(records);
+            }
+        } catch (java.nio.BufferUnderflowException e) {
+            throw new IOException("Tile " + tile.column + ", " + tile.row + " ends inside a shape");
+        }
+        return new TiledCanvas.TileShapes(tile, result, orders);
+    }
+
+    // A shape and, for a group, the records of its children after it
+    private static Shape readShape(ByteBuffer records) throws IOException {
+        Shape shape = Shape.read(records);
+        if (shape == null) {
+            throw new IOException("Unknown shape type in tiled canvas");
+        }
+        if (!(shape instanceof Group)) {
+            return shape;
+        }
+        Group header = (Group) shape;
+        if (header.size() > records.remaining() / BinaryCanvas.RECORD_SIZE) {
+            throw new IOException("Canvas file ends inside a group");
+        }
+        Shape[] children = new Shape[header.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = readShape(records);
+        }
+        return new Group(children, header.getOffsetX(), header.getOffsetY());
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Canvas file is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public Shape next() throws IOException {
+        if (shapes == null) {
+            shapes = new Shape[count];
+            for (TiledCanvas.Tile tile : tiles) {
+                TiledCanvas.TileShapes read = read(tile);
+                for (int i = 0; i < read.shapes.length; i++) {
+                    int order = read.orders[i];
+                    if (shapes[order] != null) {
+                        throw new IOException("Shape order " + order + " is in the file twice");
+                    }
+                    shapes[order] = read.shapes[i];
+                }
+            }
+        }
+        if (next == count) {
+            return null;
+        }
+        Shape shape = shapes[next];
+        shapes[next++] = null; // The caller owns it now
+        return shape;
+    }
+
+    @Override
+    public double getProgress() {
+        return count == 0 ? 1 : (double) next / count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
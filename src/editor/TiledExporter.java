@@ -0,0 +1,131 @@
+package editor;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+
+// Exports a canvas to a PNG of any size. The image is cut into bands of tiles that worker
+// threads render in parallel, each tile only drawing the shapes that reach into it. Finished
+// bands are streamed to the encoder in order and their buffers reused, so memory is bounded
+// by the band size and the number of workers rather than by the image size.
+class TiledExporter {
+    private final List<Shape> shapes;
+    private final Point origin; // Canvas point at the top left of the image
+    private final int width, height;
+    private final double scale;
+    private final Color background;
+    private final int tileSize;
+    private final int workers;
+
+    public TiledExporter(List<Shape> shapes, Point origin, int width, int height, double scale, Color background, int tileSize, int workers) {
+        this.shapes = shapes;
+        this.origin = origin;
+        this.width = width;
+        this.height = height;
+        this.scale = scale;
+        this.background = background;
+        this.tileSize = tileSize;
+        this.workers = workers;
+    }
+
+    // Returns false if cancelled was true at some point, leaving the output incomplete
+    public boolean write(OutputStream out, IntConsumer progress, BooleanSupplier cancelled) throws IOException {
+        int bandCount = (height + tileSize - 1) / tileSize;
+        int[][] bands = bucketShapes(bandCount);
+        int window = workers + 1; // bands being rendered or waiting for the encoder
+        BlockingQueue<BufferedImage> buffers = new ArrayBlockingQueue<>(window);
+        for (int i = 0; i < Math.min(window, bandCount); i++) {
+            buffers.add(new BufferedImage(width, tileSize, BufferedImage.TYPE_INT_RGB));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ArrayDeque<Future<BufferedImage>> rendering = new ArrayDeque<>();
+        try (PngStreamWriter png = new PngStreamWriter(new BufferedOutputStream(out, 1 << 16), width, height)) {
+            int submitted = 0;
+            for (int band = 0; band < bandCount; band++) {
+                while (submitted < bandCount && rendering.size() < window) {
+                    int next = submitted++;
+                    rendering.add(pool.submit(() -> renderBand(next, bands[next], buffers.take())));
+                }
+                if (cancelled.getAsBoolean()) {
+                    return false;
+                }
+                BufferedImage image = rendering.poll().get();
+                int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                png.writeRows(pixels, 0, width, Math.min(tileSize, height - band * tileSize));
+                buffers.add(image);
+                progress.accept((int) ((band + 1) * 100L / bandCount));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Rendering failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return true;
+    }
+
+    // Indexes of the shapes reaching into each band, in drawing order
+    private int[][] bucketShapes(int bandCount) {
+        int[] counts = new int[bandCount];
+        for (Shape shape : shapes) {
+            int[] range = bandRange(shape.getBounds(), bandCount);
+            for (int band = range[0]; band <= range[1]; band++) {
+                counts[band]++;
+            }
+        }
+        int[][] bands = new int[bandCount][];
+        for (int band = 0; band < bandCount; band++) {
+            bands[band] = new int[counts[band]];
+            counts[band] = 0;
+        }
+        for (int i = 0; i < shapes.size(); i++) {
+            int[] range = bandRange(shapes.get(i).getBounds(), bandCount);
+            for (int band = range[0]; band <= range[1]; band++) {
+                bands[band][counts[band]++] = i;
+            }
+        }
+        return bands;
+    }
+
+    // First and last band the bounds reach into, first > last if none
+    private int[] bandRange(Rectangle bounds, int bandCount) {
+        int first = (int) Math.floor((bounds.y - (double) origin.y) * scale / tileSize);
+        int last = (int) Math.floor((bounds.y + (double) bounds.height - origin.y) * scale / tileSize);
+        return new int[] { Math.max(first, 0), Math.min(last, bandCount - 1) };
+    }
+
+    private BufferedImage renderBand(int band, int[] bandShapes, BufferedImage image) {
+        int top = band * tileSize;
+        AffineTransform view = CanvasRenderer.imageView(origin, scale);
+        for (int x = 0; x < width; x += tileSize) {
+            Rectangle tile = new Rectangle(x, 0, Math.min(tileSize, width - x), tileSize);
+            Rectangle area = CanvasRenderer.toCanvas(new Rectangle(x, top, tile.width, tile.height), view);
+            Graphics2D g = image.createGraphics();
+            g.setClip(tile);
+            g.setColor(background);
+            g.fill(tile);
+            g.translate(0, -top);
+            g.transform(view);
+            CanvasRenderer.beginPass(g);
+            for (int i : bandShapes) {
+                Shape shape = shapes.get(i);
+                if (shape.intersects(area)) {
+                    shape.draw(g);
+                }
+            }
+            g.dispose();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,187 @@
+package editor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+// Recovery must give back the canvas the journaled edits made, across compactions
+class JournalTest {
+    private static final long TIMEOUT_MS = 20_000; // For the writer thread to catch up
+
+    @TempDir
+    File dir;
+
+    private final List<Shape> model = new ArrayList<>(); // The canvas as the editor has it
+
+    // Copies, the writer thread reads the snapshot while the model goes on changing
+    private List<Shape> snapshot() {
+        List<Shape> shapes = new ArrayList<>(model.size());
+        for (Shape shape : model) {
+            shapes.add(shape.copy());
+        }
+        return shapes;
+    }
+
+    private static Shape randomShape(Random random) {
+        int x = random.nextInt(1000), y = random.nextInt(1000);
+        switch (random.nextInt(3)) {
+            case 0:
+                return new Line(x, y, x + random.nextInt(100), y + random.nextInt(100), random.nextInt(1 << 24));
+            case 1:
+                return new Rect(x, y, x + random.nextInt(100), y + random.nextInt(100), random.nextInt(1 << 24));
+            default:
+                return new Circle(x, y, random.nextInt(50), random.nextInt(1 << 24));
+        }
+    }
+
+    private static Group randomGroup(Random random) {
+        Shape[] children = new Shape[2 + random.nextInt(3)];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = random.nextInt(5) == 0 ? randomGroup(random) : randomShape(random);
+        }
+        return new Group(children, random.nextInt(21) - 10, random.nextInt(21) - 10);
+    }
+
+    // The shapes with the children of groups written out, so canvases compare by value
+    private static String describe(List<Shape> shapes) {
+        StringBuilder out = new StringBuilder();
+        for (Shape shape : shapes) {
+            describe(shape, out);
+        }
+        return out.toString();
+    }
+
+    private static void describe(Shape shape, StringBuilder out) {
+        out.append(shape).append('\n');
+        if (shape instanceof Group) {
+            Group group = (Group) shape;
+            for (int i = 0; i < group.size(); i++) {
+                describe(group.getChild(i), out);
+            }
+        }
+    }
+
+    // Edit the model and journal the same edits, as DrawPanel does
+    private void randomEdits(Journal journal, Random random, int count) {
+        for (int step = 0; step < count; step++) {
+            int op = random.nextInt(20);
+            if (op < 5 || model.isEmpty()) {
+                Shape shape = random.nextInt(30) == 0 ? randomGroup(random) : randomShape(random);
+                model.add(shape.copy());
+                journal.add(shape);
+            } else if (op < 8) {
+                int position = random.nextInt(model.size() + 1);
+                Shape shape = random.nextInt(30) == 0 ? randomGroup(random) : randomShape(random);
+                model.add(position, shape.copy());
+                journal.insert(position, shape);
+            } else if (op < 11) {
+                int position = random.nextInt(model.size());
+                model.remove(position);
+                journal.remove(position);
+            } else if (op < 14) {
+                int position = random.nextInt(model.size());
+                int dx = random.nextInt(41) - 20, dy = random.nextInt(41) - 20;
+                model.get(position).move(dx, dy);
+                journal.move(position, dx, dy);
+            } else if (op < 16) {
+                int position = random.nextInt(model.size());
+                if (model.get(position) instanceof Line) {
+                    LineEnd end = random.nextBoolean() ? LineEnd.START : LineEnd.END;
+                    int x = random.nextInt(1000), y = random.nextInt(1000);
+                    ((Line) model.get(position)).moveEnd(end, x, y);
+                    journal.moveEnd(position, end, x, y);
+                }
+            } else {
+                int position = random.nextInt(model.size());
+                int rgb = random.nextInt(1 << 24);
+                model.get(position).setRGB(rgb);
+                if (model.get(position) instanceof Group) {
+                    journal.replace(position, model.get(position).copy()); // A RECOLOR record holds one color
+                } else {
+                    journal.recolor(position, rgb);
+                }
+            }
+        }
+    }
+
+    // Recover from the files until they hold the model, the writer thread may still be behind
+    private List<Shape> recoverModel() throws Exception {
+        String expected = describe(model);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        List<Shape> recovered = null;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                recovered = new Journal(dir, null, null).recover();
+            } catch (IOException e) {
+                recovered = null; // Files replaced by a compaction while they were read
+            }
+            if (recovered != null && describe(recovered).equals(expected)) {
+                return recovered;
+            }
+            Thread.sleep(50);
+        }
+        assertNotNull(recovered);
+        assertEquals(expected, describe(recovered));
+        return recovered;
+    }
+
+    private Journal start() throws IOException {
+        Journal journal = new Journal(dir, this::snapshot, e -> fail(e));
+        assertTrue(journal.lock());
+        journal.start(snapshot());
+        return journal;
+    }
+
+    @Test
+    void recoversEditsAcrossCompactions() throws Exception {
+        Random random = new Random(1);
+        Journal journal = start();
+        randomEdits(journal, random, 100_000); // Megabytes of records, compacted on the way
+        recoverModel();
+        journal.close();
+        assertNull(new Journal(dir, null, null).recover()); // Closed normally, nothing to recover
+    }
+
+    @Test
+    void editsDuringASuspendedLoadAreNotJournaled() throws Exception {
+        Random random = new Random(2);
+        Journal journal = start();
+        randomEdits(journal, random, 1000);
+        journal.suspend();
+        for (int i = 0; i < 1000; i++) {
+            Shape shape = randomShape(random);
+            model.add(shape.copy());
+            journal.add(shape);
+        }
+        journal.snapshot(snapshot()); // The load is done
+        randomEdits(journal, random, 1000);
+        recoverModel();
+        journal.close();
+    }
+
+    @Test
+    void tornAndCorruptRecordsEndTheReplay() throws Exception {
+        Random random = new Random(3);
+        Journal journal = start();
+        randomEdits(journal, random, 2000);
+        String expected = describe(recoverModel());
+        File[] journals = dir.listFiles((d, name) -> name.startsWith("journal-"));
+        assertNotNull(journals);
+        assertEquals(1, journals.length);
+        // A record header that promises more than is there, as when the session died mid-write
+        Files.write(journals[0].toPath(), new byte[] { 0, 0, 0, 20, 1, 2, 3, 4, 9 }, StandardOpenOption.APPEND);
+        assertEquals(expected, describe(new Journal(dir, null, null).recover()));
+        // A whole record with a wrong checksum
+        Files.write(journals[0].toPath(), new byte[] { 0, 0, 0, 1, 1, 2, 3, 4, 2 }, StandardOpenOption.APPEND);
+        assertEquals(expected, describe(new Journal(dir, null, null).recover()));
+        journal.close();
+    }
+}
@@ -0,0 +1,118 @@
+package editor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+// The parallel reader must give the same shapes and errors as the sequential one, whatever
+// lines fall on the chunk boundaries
+class ParallelTextCanvasReaderTest {
+    private static final String[] BREAKS = { "\n", "\r\n", "\r" };
+
+    @TempDir
+    File dir;
+
+    // A file of several chunks with a palette, groups, blank, invalid and late COLOR lines
+    private File randomFile(long seed, String[] breaks) throws IOException {
+        Random random = new Random(seed);
+        File file = new File(dir, "canvas-" + seed + ".txt");
+        long size = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.defaultCharset()))) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                line.append("COLOR ").append(i).append(' ').append(i * 30).append(" 0 ").append(255 - i).append('|');
+                line.append('|'); // And a blank line
+            }
+            while (size < 3L * ParallelTextCanvasReader.CHUNK_SIZE) {
+                int kind = random.nextInt(100);
+                int invalid = random.nextInt(20_000); // Rare, so the reported ones spread over all chunks
+                if (invalid < 3) {
+                    line.append(invalid == 0 ? "CIRCLE 1 2|" // Missing values
+                            : invalid == 1 ? "COLOR 9 1 2 3|" // Not at the top
+                            : "LINE 1 2 3 4 @9|"); // Undefined palette color
+                } else if (kind < 2) {
+                    line.append("GROUP ").append(2 + random.nextInt(3)).append(" 5 -5|");
+                } else if (kind < 5) {
+                    line.append('|');
+                } else {
+                    String type = kind < 40 ? "LINE" : kind < 70 ? "RECTANGLE" : "CIRCLE";
+                    line.append(type).append(' ').append(random.nextInt(4000)).append(' ').append(random.nextInt(4000))
+                            .append(' ').append(random.nextInt(200)).append(' ').append(random.nextInt(200));
+                    line.append(random.nextBoolean() ? " @" + random.nextInt(8)
+                            : " " + random.nextInt(256) + " " + random.nextInt(256) + " " + random.nextInt(256));
+                    line.append('|');
+                }
+                for (int i = 0; i < line.length(); i++) {
+                    if (line.charAt(i) == '|') {
+                        String lineBreak = breaks[random.nextInt(breaks.length)];
+                        out.write(lineBreak);
+                        size += lineBreak.length();
+                    } else {
+                        out.write(line.charAt(i));
+                        size++;
+                    }
+                }
+                line.setLength(0);
+            }
+            for (int i = 0; i < 50; i++) { // Children for the groups still open
+                out.write("CIRCLE 10 10 5 1 2 3\n");
+            }
+        }
+        return file;
+    }
+
+    private static List<String> readAll(CanvasReader reader, List<String> errors) throws IOException {
+        List<String> shapes = new ArrayList<>();
+        try (CanvasReader in = reader) {
+            Shape shape;
+            while ((shape = in.next()) != null) {
+                shapes.add(shape.toString());
+            }
+            errors.add("count " + in.getErrorCount());
+            errors.addAll(in.getErrors());
+        }
+        return shapes;
+    }
+
+    private void assertSameAsSequential(File file) throws IOException {
+        List<String> sequentialErrors = new ArrayList<>();
+        List<String> sequential = readAll(new TextCanvasReader(file), sequentialErrors);
+        for (int threads : new int[] { 1, 3 }) {
+            List<String> parallelErrors = new ArrayList<>();
+            List<String> parallel = readAll(new ParallelTextCanvasReader(file, threads), parallelErrors);
+            assertEquals(sequential.size(), parallel.size());
+            assertEquals(sequential, parallel);
+            assertEquals(sequentialErrors, parallelErrors);
+        }
+    }
+
+    @Test
+    void sameAsSequentialWithNewlines() throws IOException {
+        assertSameAsSequential(randomFile(1, new String[] { "\n" }));
+    }
+
+    @Test
+    void sameAsSequentialWithMixedLineBreaks() throws IOException {
+        assertSameAsSequential(randomFile(2, BREAKS));
+    }
+
+    @Test
+    void sameAsSequentialWithCarriageReturnsOnly() throws IOException {
+        assertSameAsSequential(randomFile(3, new String[] { "\r" }));
+    }
+
+    @Test
+    void groupsComeOutWholeAcrossChunks() throws IOException {
+        File file = randomFile(4, BREAKS);
+        List<String> sequential = readAll(new GroupingReader(new TextCanvasReader(file)), new ArrayList<>());
+        List<String> parallel = readAll(new GroupingReader(new ParallelTextCanvasReader(file, 4)), new ArrayList<>());
+        assertEquals(sequential, parallel);
+    }
+}
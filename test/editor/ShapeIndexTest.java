@@ -0,0 +1,158 @@
+package editor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+// ShapeIndex against a linear scan of the shape list it mirrors
+class ShapeIndexTest {
+    private static Shape randomShape(Random random) {
+        int x = random.nextInt(20_000) - 10_000, y = random.nextInt(20_000) - 10_000;
+        switch (random.nextInt(3)) {
+            case 0:
+                return new Line(x, y, x + random.nextInt(401) - 200, y + random.nextInt(401) - 200, 0);
+            case 1:
+                int size = random.nextInt(10) == 0 ? 3000 : 60; // Some shapes span many cells
+                return new Rect(x, y, x + random.nextInt(size), y + random.nextInt(size), 0);
+            default:
+                return new Circle(x, y, random.nextInt(100), 0);
+        }
+    }
+
+    // What topmostHit should find: the last shape in the list that is hit
+    private static Shape linearHit(List<Shape> shapes, Point p, int tolerance) {
+        for (int i = shapes.size() - 1; i >= 0; i--) {
+            if (shapes.get(i).hit(p.x, p.y, tolerance)) {
+                return shapes.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static List<Shape> linearIntersecting(List<Shape> shapes, Rectangle area) {
+        List<Shape> found = new ArrayList<>();
+        for (Shape shape : shapes) {
+            if (shape.intersects(area)) {
+                found.add(shape);
+            }
+        }
+        return found;
+    }
+
+    private static void assertMatchesScan(List<Shape> shapes, ShapeIndex index, Random random) {
+        assertEquals(shapes.size(), index.size());
+        for (int i = 0; i < 300; i++) {
+            Point p;
+            if (i % 2 == 0 && !shapes.isEmpty()) { // On a shape, so there are hits to rank
+                Rectangle bounds = shapes.get(random.nextInt(shapes.size())).getBounds();
+                p = new Point(bounds.x + random.nextInt(bounds.width + 1), bounds.y + random.nextInt(bounds.height + 1));
+            } else {
+                p = new Point(random.nextInt(24_000) - 12_000, random.nextInt(24_000) - 12_000);
+            }
+            assertSame(linearHit(shapes, p, 3), index.topmostHit(p, 3));
+        }
+        for (int i = 0; i < 100; i++) {
+            int width = i % 2 == 0 ? random.nextInt(500) : random.nextInt(30_000); // Cell lookups and the full scan
+            Rectangle area = new Rectangle(random.nextInt(24_000) - 12_000, random.nextInt(24_000) - 12_000,
+                    width, random.nextInt(width + 1));
+            assertEquals(linearIntersecting(shapes, area), index.intersecting(area));
+        }
+    }
+
+    @Test
+    void appendedShapesMatchLinearScan() {
+        Random random = new Random(1);
+        List<Shape> shapes = new ArrayList<>();
+        ShapeIndex index = new ShapeIndex();
+        for (int i = 0; i < 20_000; i++) {
+            Shape shape = randomShape(random);
+            shapes.add(shape);
+            index.add(shape);
+        }
+        assertMatchesScan(shapes, index, random);
+    }
+
+    @Test
+    void insertsRemovesAndMovesMatchLinearScan() {
+        Random random = new Random(2);
+        List<Shape> shapes = new ArrayList<>();
+        ShapeIndex index = new ShapeIndex();
+        for (int step = 0; step < 20_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 5 || shapes.isEmpty()) { // Insert between neighbours, as undo and ungroup do
+                int position = random.nextInt(shapes.size() + 1);
+                int count = 1 + random.nextInt(3);
+                for (int i = 0; i < count; i++) {
+                    shapes.add(position + i, randomShape(random));
+                }
+                insert(shapes, index, position, count);
+            } else if (op < 8) {
+                index.remove(shapes.remove(random.nextInt(shapes.size())));
+            } else {
+                Shape shape = shapes.get(random.nextInt(shapes.size()));
+                shape.move(random.nextInt(2001) - 1000, random.nextInt(2001) - 1000);
+                index.update(shape);
+            }
+        }
+        assertMatchesScan(shapes, index, random);
+    }
+
+    @Test
+    void insertsIntoTheSameGapRenumber() {
+        Random random = new Random(3);
+        List<Shape> shapes = new ArrayList<>();
+        ShapeIndex index = new ShapeIndex();
+        for (int i = 0; i < 100; i++) {
+            Shape shape = randomShape(random);
+            shapes.add(shape);
+            index.add(shape);
+        }
+        for (int i = 0; i < 200; i++) { // Halves the gap below shape 51 each time, far more than it has room for
+            shapes.add(50, randomShape(random));
+            insert(shapes, index, 50, 1);
+        }
+        for (int i = 1; i < shapes.size(); i++) {
+            assertTrue(index.orderOf(shapes.get(i - 1)) < index.orderOf(shapes.get(i)));
+        }
+        assertMatchesScan(shapes, index, random);
+    }
+
+    @Test
+    void shapesOnTopOfEachOtherHitTheLastOne() {
+        List<Shape> shapes = new ArrayList<>();
+        ShapeIndex index = new ShapeIndex();
+        for (int i = 0; i < 10; i++) {
+            shapes.add(new Rect(0, 0, 100, 100, i));
+        }
+        for (int i = 0; i < 10; i += 2) { // Every other one first, the rest in between
+            index.add(shapes.get(i));
+        }
+        for (int i = 1; i < 10; i += 2) {
+            index.add(shapes.get(i), index.ordersBetween(shapes.get(i - 1), i + 1 < 10 ? shapes.get(i + 1) : null, 1)[0]);
+        }
+        assertSame(shapes.get(9), index.topmostHit(new Point(50, 50), 0));
+        index.remove(shapes.get(9));
+        assertSame(shapes.get(8), index.topmostHit(new Point(50, 50), 0));
+        assertEquals(shapes.subList(0, 9), index.intersecting(new Rectangle(10, 10, 5, 5)));
+    }
+
+    // Register the count shapes just put at position, the way DrawPanel.indexShapes does
+    private static void insert(List<Shape> shapes, ShapeIndex index, int position, int count) {
+        Shape below = position > 0 ? shapes.get(position - 1) : null;
+        Shape above = position + count < shapes.size() ? shapes.get(position + count) : null;
+        long[] orders = index.ordersBetween(below, above, count);
+        if (orders == null) {
+            index.renumber(shapes);
+            orders = index.ordersBetween(below, above, count);
+        }
+        for (int i = 0; i < count; i++) {
+            index.add(shapes.get(position + i), orders[i]);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package editor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+// ShapeList against an ArrayList doing the same edits, with snapshots taken along the way
+class ShapeListTest {
+    private final Map<Shape, Shape> copies = new IdentityHashMap<>(); // onCopy pairs, old to copy
+
+    private ShapeList newList() {
+        return new ShapeList((shape, copy) -> {
+            assertNotSame(shape, copy);
+            copies.put(shape, copy);
+        });
+    }
+
+    private static Shape randomShape(Random random) {
+        int x = random.nextInt(1000), y = random.nextInt(1000);
+        return new Rect(x, y, x + random.nextInt(50), y + random.nextInt(50), random.nextInt(1 << 24));
+    }
+
+    // Same shapes in the same order, compared by value: copy-on-write may have replaced the objects
+    private static void assertSameShapes(List<String> expected, List<Shape> actual) {
+        assertEquals(expected.size(), actual.size());
+        List<String> values = new ArrayList<>(actual.size());
+        for (Shape shape : actual) {
+            values.add(shape.toString());
+        }
+        assertEquals(expected, values);
+        for (int i = 0; i < actual.size(); i += 1 + actual.size() / 50) {
+            assertEquals(expected.get(i), actual.get(i).toString());
+        }
+    }
+
+    private static List<String> values(List<Shape> shapes) {
+        List<String> values = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            values.add(shape.toString());
+        }
+        return values;
+    }
+
+    @Test
+    void randomEditsMatchArrayList() {
+        Random random = new Random(1);
+        ShapeList list = newList();
+        List<Shape> model = new ArrayList<>();
+        for (int step = 0; step < 50_000; step++) {
+            int op = random.nextInt(10);
+            if (op < 4 || model.isEmpty()) {
+                int position = random.nextInt(model.size() + 1);
+                Shape shape = randomShape(random);
+                list.add(position, shape);
+                model.add(position, shape.copy());
+            } else if (op < 7) {
+                int position = random.nextInt(model.size());
+                assertEquals(model.remove(position).toString(), list.remove(position).toString());
+            } else {
+                int position = random.nextInt(model.size());
+                list.edit(position).move(3, -2);
+                model.get(position).move(3, -2);
+            }
+        }
+        assertSameShapes(values(model), list);
+        assertEquals(model.size(), list.size());
+    }
+
+    @Test
+    void snapshotsDoNotSeeLaterEdits() {
+        Random random = new Random(2);
+        ShapeList list = newList();
+        List<Shape> model = new ArrayList<>();
+        List<List<Shape>> snapshots = new ArrayList<>();
+        List<List<String>> expected = new ArrayList<>();
+        for (int step = 0; step < 20_000; step++) {
+            if (step % 1000 == 0) {
+                snapshots.add(list.snapshot());
+                expected.add(values(model));
+            }
+            int op = random.nextInt(10);
+            if (op < 5 || model.isEmpty()) {
+                int position = random.nextInt(model.size() + 1);
+                Shape shape = randomShape(random);
+                list.add(position, shape);
+                model.add(position, shape.copy());
+            } else if (op < 7) {
+                int position = random.nextInt(model.size());
+                model.remove(position);
+                list.remove(position);
+            } else {
+                int position = random.nextInt(model.size());
+                list.edit(position).setRGB(step);
+                model.get(position).setRGB(step);
+            }
+        }
+        assertSameShapes(values(model), list);
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertSameShapes(expected.get(i), snapshots.get(i));
+        }
+    }
+
+    @Test
+    void editCopiesSharedShapesAndReportsTheCopy() {
+        ShapeList list = newList();
+        Shape shape = new Line(0, 0, 10, 10, 0);
+        list.add(0, shape);
+        assertSame(shape, list.edit(0)); // Not in a snapshot yet, changed in place
+        List<Shape> snapshot = list.snapshot();
+        Shape edited = list.edit(0);
+        assertNotSame(shape, edited);
+        assertSame(edited, copies.get(shape));
+        edited.move(5, 5);
+        assertSame(shape, snapshot.get(0));
+        assertEquals("LINE 0 0 10 10 0 0 0", snapshot.get(0).toString());
+        assertEquals("LINE 5 5 15 15 0 0 0", list.get(0).toString());
+    }
+
+    @Test
+    void manyRemovalsKeepTheListConsistent() {
+        Random random = new Random(3);
+        ShapeList list = newList();
+        List<Shape> model = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            Shape shape = randomShape(random);
+            list.add(list.size(), shape);
+            model.add(shape.copy());
+        }
+        List<Shape> snapshot = list.snapshot();
+        List<String> before = values(model);
+        while (model.size() > 100) { // Leaves and branches empty out all over the tree
+            int position = random.nextInt(model.size());
+            model.remove(position);
+            list.remove(position);
+        }
+        assertSameShapes(values(model), list);
+        for (int i = 0; i < 5000; i++) {
+            int position = random.nextInt(model.size() + 1);
+            Shape shape = randomShape(random);
+            list.add(position, shape);
+            model.add(position, shape.copy());
+        }
+        assertSameShapes(values(model), list);
+        assertSameShapes(before, snapshot);
+        while (!model.isEmpty()) {
+            model.remove(0);
+            list.remove(0);
+        }
+        assertEquals(0, list.size());
+        assertFalse(list.iterator().hasNext());
+    }
+
+    @Test
+    void indexOutOfRangeThrows() {
+        ShapeList list = newList();
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.add(1, new Circle(0, 0, 1, 0)));
+        list.add(0, new Circle(0, 0, 1, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.edit(-1));
+    }
+}